@@ -171,6 +171,18 @@ gradlePlugin {
                 }
             }
         }
+        register("nullawaySettings") {
+            id = "net.ltgt.nullaway.settings"
+            displayName = "Configures build-wide defaults for the NullAway DSL"
+            description = "Configures build-wide defaults for the NullAway DSL"
+            implementationClass = "net.ltgt.gradle.nullaway.NullAwaySettingsPlugin"
+            tags.addAll("javac", "error-prone", "nullaway", "nullability")
+            compatibility {
+                features {
+                    configurationCache = true
+                }
+            }
+        }
     }
 }
 
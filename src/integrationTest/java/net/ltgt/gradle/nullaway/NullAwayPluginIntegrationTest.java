@@ -4,11 +4,16 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.TruthJUnit.assume;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.truth.Correspondence;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.tools.ToolProvider;
 import org.gradle.testkit.runner.TaskOutcome;
+import org.gradle.util.GradleVersion;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
@@ -174,6 +179,248 @@ public class NullAwayPluginIntegrationTest extends BaseIntegrationTest {
     assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
   }
 
+  @Test
+  void indexNullMarkedPackages() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            annotatedPackages.empty()
+            indexNullMarkedPackages.set(true)
+        }
+        dependencies {
+            implementation("org.jspecify:jspecify:1.0.0")
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+    Files.writeString(
+        projectDir.resolve("src/main/java/test/package-info.java"),
+        // language=java
+        """
+        @NullMarked
+        package test;
+
+        import org.jspecify.annotations.NullMarked;
+        """);
+
+    // when
+    var result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":indexNullMarkedPackages")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
+    assertThat(Files.readString(projectDir.resolve("build/nullaway/main/null-marked-index.txt")))
+        .isEqualTo("package\tNullMarked\ttest\ttest/package-info.java\n");
+  }
+
+  @Test
+  void shareNullnessSummaries() throws Exception {
+    // given
+    Files.writeString(getSettingsFile(), "include(\"lib\")");
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            shareNullnessSummaries.set(true)
+        }
+        dependencies {
+            implementation(project(":lib"))
+        }
+        """,
+        StandardOpenOption.APPEND);
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("lib")).resolve("build.gradle.kts"),
+        // language=kts
+        """
+        import net.ltgt.gradle.nullaway.nullaway
+
+        plugins {
+            `java-library`
+            id("net.ltgt.errorprone")
+            id("net.ltgt.nullaway")
+        }
+
+        repositories {
+            mavenCentral()
+        }
+        dependencies {
+            errorprone("com.google.errorprone:error_prone_core:%s")
+            errorprone("com.uber.nullaway:nullaway:%s")
+        }
+
+        nullaway {
+            annotatedPackages.add("lib")
+            unannotatedSubPackages.add("lib.legacy")
+        }
+        """
+            .formatted(errorproneVersion, nullawayVersion));
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("lib/src/main/java/lib/legacy"))
+            .resolve("Legacy.java"),
+        // language=java
+        """
+        package lib.legacy;
+
+        public class Legacy {}
+        """);
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("lib/src/main/java/lib")).resolve("Lib.java"),
+        // language=java
+        """
+        package lib;
+
+        public class Lib {
+            public static @Nullable Object get() {
+                return null;
+            }
+        }
+
+        @interface Nullable {}
+        """);
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("src/main/java/test")).resolve("Failure.java"),
+        // language=java
+        """
+        package test;
+
+        public class Failure {
+            static void foo() {
+                System.out.println(lib.Lib.get().toString());
+            }
+        }
+        """);
+
+    // when
+    var result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":lib:generateNullnessSummary")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains("Failure.java:5: warning: [NullAway]");
+    assertThat(Files.readString(projectDir.resolve("lib/build/nullaway/main/nullness-summary.txt")))
+        .isEqualTo("annotatedPackage\tlib\nunannotatedSubPackage\tlib.legacy\n");
+  }
+
+  @Test
+  void inferLibraryModels() throws Exception {
+    // given
+    writeLibraryJar(
+        projectDir.resolve("repo/org/example/lib/1.0/lib-1.0.jar"),
+        // language=java
+        """
+        package lib;
+
+        public class Lib {
+            public static int length(String s) {
+                return s.length();
+            }
+        }
+        """);
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        repositories {
+            maven {
+                url = uri("repo")
+                metadataSources { artifact() }
+            }
+        }
+        nullaway {
+            inferLibraryModels.set(true)
+        }
+        dependencies {
+            implementation("org.example:lib:1.0")
+            nullawayJarInfer("com.uber.nullaway:jar-infer-cli:%s")
+        }
+        tasks.register("printLibraryModels") {
+            val annotationProcessorPath = tasks.compileJava.get().options.annotationProcessorPath!!
+            doLast {
+                annotationProcessorPath
+                    .filter { it.name.endsWith("-jarinfer.jar") }
+                    .forEach { println("Library model: ${it.name}") }
+            }
+        }
+        """
+            .formatted(nullawayVersion),
+        StandardOpenOption.APPEND);
+
+    // when
+    var result = buildWithArgs("printLibraryModels");
+
+    // then
+    assertThat(result.getOutput()).contains("Library model: lib-1.0-jarinfer.jar");
+  }
+
+  @Test
+  void inferLibraryModelsRequiresJarInfer() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            inferLibraryModels.set(true)
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+
+    // when
+    var result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(result.getOutput())
+        .contains(
+            "inferLibraryModels is enabled but the nullawayJarInfer configuration has no"
+                + " dependencies");
+  }
+
+  @Test
+  void excludeGeneratedSources() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            excludeGeneratedSources.set(true)
+        }
+        sourceSets {
+            main {
+                java.srcDir(layout.buildDirectory.dir("generated/sources/custom"))
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+    Files.createDirectories(projectDir.resolve("build/generated/sources/custom/test"));
+    Files.move(
+        projectDir.resolve("src/main/java/test/Failure.java"),
+        projectDir.resolve("build/generated/sources/custom/test/Failure.java"));
+
+    // when
+    var result = buildWithArgs("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
   @Test
   void canDisableNullAway() throws Exception {
     // given
@@ -182,8 +429,300 @@ public class NullAwayPluginIntegrationTest extends BaseIntegrationTest {
         // language=kts
         """
 
-        tasks.withType<JavaCompile>().configureEach {
-            options.errorprone.nullaway.disable()
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone.nullaway.disable()
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
+  @Test
+  void onlyNullAway() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone.nullaway {
+                onlyNullAway.set(true)
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+    Files.writeString(
+        projectDir.resolve("src/main/java/test/DeadException.java"),
+        // language=java
+        """
+        package test;
+
+        public class DeadException {
+            static void foo() {
+                new RuntimeException();
+            }
+        }
+        """);
+
+    // when
+    var result = buildWithArgs("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    writeFailureSource();
+    result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
+  }
+
+  @Test
+  void separateCheckTask() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            separateCheckTask = true
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgsAndFail("check");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains("src/main/java/test/Failure.java:8:");
+    assertThat(result.getOutput()).contains("warning: [NullAway]");
+    assertThat(projectDir.resolve("build/reports/nullaway/main.txt").toFile().isFile()).isTrue();
+
+    // when
+    Files.delete(projectDir.resolve("src/main/java/test/Failure.java"));
+    result = buildWithArgs("check");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            excludedClasses.add("test.Other")
+        }
+        """,
+        StandardOpenOption.APPEND);
+    result = buildWithArgs("check");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.UP_TO_DATE);
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
+  @Test
+  void checkTaskIgnoreFailures() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            separateCheckTask = true
+        }
+        tasks.withType<net.ltgt.gradle.nullaway.NullAwayCheck>().configureEach {
+            ignoreFailures = true
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("check");
+
+    // then
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(result.getOutput()).contains("src/main/java/test/Failure.java:8:");
+  }
+
+  @Test
+  void aggregatesSarifReports() throws Exception {
+    // given
+    Files.writeString(getSettingsFile(), "include(\"lib\")");
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            separateCheckTask = true
+        }
+        tasks.withType<net.ltgt.gradle.nullaway.NullAwayCheck>().configureEach {
+            ignoreFailures = true
+        }
+        """,
+        StandardOpenOption.APPEND);
+    // A project that doesn't apply the plugin
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("lib")).resolve("build.gradle.kts"),
+        // language=kts
+        """
+        plugins {
+            `java-library`
+        }
+        """);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("--configuration-cache", "aggregateNullAwayReports");
+
+    // then
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    assertThat(requireNonNull(result.task(":aggregateNullAwayReports")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+    var sarif = Files.readString(projectDir.resolve("build/reports/nullaway/aggregate.sarif"));
+    assertThat(sarif).contains("\"automationDetails\": {\"id\": \":nullawayCheck\"}");
+    assertThat(sarif).contains("{\"ruleId\": \"NullAway\", \"level\": \"warning\"");
+    assertThat(sarif)
+        .contains(
+            "{\"uri\": \"src/main/java/test/Failure.java\", \"uriBaseId\": \"%SRCROOT%\"},"
+                + " \"region\": {\"startLine\": 8,");
+  }
+
+  @Test
+  void doesNotAggregateInlineAnalysis() throws Exception {
+    // given
+    writeSuccessSource();
+
+    // when
+    var result = buildWithArgsAndFail("aggregateNullAwayReports");
+
+    // then
+    assertThat(result.task(":nullawayCheck")).isNull();
+    assertThat(result.getOutput()).contains("No NullAway report to aggregate");
+  }
+
+  @Test
+  void cachesCheckResults() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            separateCheckTask = true
+        }
+        tasks.withType<net.ltgt.gradle.nullaway.NullAwayCheck>().configureEach {
+            cacheResults = true
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+    writeFailureSource();
+    var result = buildWithArgsAndFail("nullawayCheck");
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+
+    // when
+    Files.writeString(
+        projectDir.resolve("src/main/java/test/Success.java"),
+        "// some change\n",
+        StandardOpenOption.APPEND);
+    result = buildWithArgsAndFail("--info", "nullawayCheck");
+
+    // then
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput())
+        .contains("Reusing cached NullAway results for 1 out of 2 source files");
+    assertThat(result.getOutput()).contains("src/main/java/test/Failure.java:8:");
+  }
+
+  @Test
+  void cachesCheckResultsWithWarningsAsErrors() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            separateCheckTask = true
+        }
+        tasks.compileJava {
+            options.errorprone.nullaway {
+                warn()
+            }
+        }
+        tasks.withType<net.ltgt.gradle.nullaway.NullAwayCheck>().configureEach {
+            cacheResults = true
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+    writeFailureSource();
+    var result = buildWithArgsAndFail("nullawayCheck");
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).doesNotContain("-Werror specified");
+
+    // when
+    Files.writeString(
+        projectDir.resolve("src/main/java/test/Success.java"),
+        "// some change\n",
+        StandardOpenOption.APPEND);
+    result = buildWithArgsAndFail("--info", "nullawayCheck");
+
+    // then
+    assertThat(requireNonNull(result.task(":nullawayCheck")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput())
+        .contains("Reusing cached NullAway results for 1 out of 2 source files");
+    assertThat(result.getOutput()).contains("src/main/java/test/Failure.java:8:");
+  }
+
+  @Test
+  void onlyWhenChecking() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            onlyWhenChecking = true
         }
         """,
         StandardOpenOption.APPEND);
@@ -195,6 +734,156 @@ public class NullAwayPluginIntegrationTest extends BaseIntegrationTest {
     // then
     assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
         .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    result = buildWithArgsAndFail("check");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
+  }
+
+  @Test
+  void reportBuildOverhead() throws Exception {
+    assume().that(testGradleVersion).isAtLeast(GradleVersion.version("8.1"));
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            reportBuildOverhead = true
+        }
+        tasks.compileJava {
+            options.errorprone.nullaway.preset(net.ltgt.gradle.nullaway.NullAwayPreset.FAST)
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+
+    // when
+    var result = buildWithArgs("--configuration-cache", "compileJava");
+
+    // then
+    assertThat(result.getOutput())
+        .contains("Compile tasks running NullAway: 1, with 1 source file(s), taking ");
+    assertThat(result.getOutput()).containsMatch("\\s+:compileJava\\s+[0-9.]+s\\s+1\\s+FAST\\n");
+    var history = projectDir.resolve(".gradle/nullaway/overhead-history.csv");
+    assertThat(Files.readAllLines(history))
+        .comparingElementsUsing(Correspondence.<String, String>from(String::matches, "matches"))
+        .containsExactly(
+            "timestamp,result,tasks,files,millis,presets",
+            ".+,SUCCESS,1,1,[0-9]+,FAST")
+        .inOrder();
+
+    // when
+    writeFailureSource();
+    result = buildWithArgsAndFail("--configuration-cache", "compileJava");
+
+    // then
+    assertThat(result.getOutput()).doesNotContain("Compile tasks running NullAway");
+    assertThat(Files.readAllLines(history)).hasSize(2);
+  }
+
+  @Test
+  void shareTaskOptions() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            shareTaskOptions.set(true)
+        }
+        tasks.compileTestJava {
+            options.errorprone.nullaway.disable()
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("src/test/java/test"))
+            .resolve("TestFailure.java"),
+        // language=java
+        """
+        package test;
+
+        public class TestFailure {
+            static void log(Object x) {
+                System.out.println(x.toString());
+            }
+            static void foo() {
+                log(null);
+            }
+        }
+        """);
+
+    // when
+    var result = buildWithArgs("compileTestJava", "-x", "compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileTestJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
+  }
+
+  @Test
+  void configuresSourceSets() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            sourceSets.named("test") {
+                disable()
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+    Files.writeString(
+        Files.createDirectories(projectDir.resolve("src/test/java/test"))
+            .resolve("TestFailure.java"),
+        // language=java
+        """
+        package test;
+
+        public class TestFailure {
+            static void log(Object x) {
+                System.out.println(x.toString());
+            }
+            static void foo() {
+                log(null);
+            }
+        }
+        """);
+
+    // when
+    var result = buildWithArgs("compileTestJava", "-x", "compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileTestJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
   }
 
   @Test
@@ -298,6 +987,40 @@ public class NullAwayPluginIntegrationTest extends BaseIntegrationTest {
         .isEqualTo(TaskOutcome.UP_TO_DATE);
   }
 
+  @Test
+  void isIgnoredWhenErrorProneIsDisabled() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone {
+                isEnabled.set(false)
+                nullaway {
+                    autoFixSuppressionComment.set(project.property("autofix-comment") as String)
+                }
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("compileJava", "-Pautofix-comment=foo");
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // when
+    result = buildWithArgs("compileJava", "-Pautofix-comment=bar");
+    // then
+    // Changing a property while Error Prone is disabled has no impact on up-to-date checks
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.UP_TO_DATE);
+  }
+
   @Test
   void isConfigurationCacheFriendly() throws Exception {
     // given
@@ -352,4 +1075,72 @@ public class NullAwayPluginIntegrationTest extends BaseIntegrationTest {
     assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
         .isEqualTo(TaskOutcome.FROM_CACHE);
   }
+
+  @Test
+  @DisabledOnOs(OS.WINDOWS) // See https://github.com/gradle/gradle/issues/12535
+  void canonicalizedListsAreBuildCacheFriendly(@TempDir Path testKitDir) throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            canonicalizeLists.set(true)
+        }
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone.nullaway {
+                excludedClasses.set((project.property("excluded") as String).split(','))
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeSuccessSource();
+
+    // Prime the build cache
+    var result =
+        prepareBuild("--build-cache", "compileJava", "-Pexcluded=test.B,test.A")
+            .withTestKitDir(testKitDir.toFile())
+            .build();
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+
+    // Delete the local state
+    prepareBuild("clean", "-Pexcluded=").withTestKitDir(testKitDir.toFile()).build();
+
+    // when
+    result =
+        prepareBuild("--build-cache", "compileJava", "-Pexcluded=test.A,test.B,test.A")
+            .withTestKitDir(testKitDir.toFile())
+            .build();
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FROM_CACHE);
+  }
+
+  /** Compiles the given source, of a {@code lib.Lib} class, into a JAR. */
+  private void writeLibraryJar(Path jar, String source) throws Exception {
+    var sourceFile = Files.createDirectories(projectDir.resolve("libsrc/lib")).resolve("Lib.java");
+    Files.writeString(sourceFile, source);
+    var classesDir = Files.createDirectories(projectDir.resolve("libclasses"));
+    var compiler = requireNonNull(ToolProvider.getSystemJavaCompiler());
+    assertThat(
+            compiler.run(
+                null,
+                null,
+                null,
+                "--release",
+                "8",
+                "-d",
+                classesDir.toString(),
+                sourceFile.toString()))
+        .isEqualTo(0);
+    Files.createDirectories(jar.getParent());
+    try (var os = new JarOutputStream(Files.newOutputStream(jar))) {
+      os.putNextEntry(new JarEntry("lib/Lib.class"));
+      Files.copy(classesDir.resolve("lib/Lib.class"), os);
+      os.closeEntry();
+    }
+  }
 }
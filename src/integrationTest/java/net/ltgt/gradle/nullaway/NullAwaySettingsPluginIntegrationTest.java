@@ -0,0 +1,228 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NullAwaySettingsPluginIntegrationTest extends BaseIntegrationTest {
+  @BeforeEach
+  void setup() throws Exception {
+    Files.writeString(
+        getSettingsFile(),
+        // language=kts
+        """
+        import net.ltgt.gradle.nullaway.nullaway
+
+        plugins {
+            id("net.ltgt.nullaway.settings")
+        }
+
+        nullaway {
+            annotatedPackages.add("test")
+            excludedClasses.add("test.Failure")
+        }
+        """);
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+        import net.ltgt.gradle.errorprone.*
+        import net.ltgt.gradle.nullaway.nullaway
+
+        plugins {
+            `java-library`
+            id("net.ltgt.errorprone")
+            id("net.ltgt.nullaway")
+        }
+
+        repositories {
+            mavenCentral()
+        }
+        dependencies {
+            errorprone("com.google.errorprone:error_prone_core:%s")
+            errorprone("com.uber.nullaway:nullaway:%s")
+        }
+
+        tasks.withType<JavaCompile>().configureEach {
+            options.compilerArgs.add("-Werror")
+        }
+
+        if (GradleVersion.current() < GradleVersion.version("7.0")) {
+            allprojects {
+                configurations.all {
+                    attributes.attribute(Attribute.of("org.gradle.jvm.environment", String::class.java), "standard-jvm")
+                }
+            }
+        }
+        """
+            .formatted(errorproneVersion, nullawayVersion));
+  }
+
+  @Test
+  void usesBuildWideDefaults() throws Exception {
+    // given
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
+  @Test
+  void tasksCanOverrideBuildWideDefaults() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone.nullaway {
+                excludedClasses.empty()
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgsAndFail("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.FAILED);
+    assertThat(result.getOutput()).contains(FAILURE_SOURCE_COMPILATION_ERROR);
+  }
+
+  @Test
+  void projectLevelValuesTakePrecedence() throws Exception {
+    // given
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            annotatedPackages.set(listOf("other"))
+        }
+        tasks.withType<JavaCompile>().configureEach {
+            options.errorprone.nullaway {
+                excludedClasses.empty()
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writeFailureSource();
+
+    // when
+    var result = buildWithArgs("compileJava");
+
+    // then
+    assertThat(requireNonNull(result.task(":compileJava")).getOutcome())
+        .isEqualTo(TaskOutcome.SUCCESS);
+  }
+
+  @Test
+  void usesBuildWideOptionsAndPreset() throws Exception {
+    // given
+    Files.writeString(
+        getSettingsFile(),
+        // language=kts
+        """
+
+        nullaway {
+            preset(net.ltgt.gradle.nullaway.NullAwayPreset.STRICT)
+            checkContracts.set(false)
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writePrintArgumentsTask();
+
+    // when
+    var result = buildWithArgs("printNullAwayArguments");
+
+    // then
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:CheckOptionalEmptiness=true");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:ExhaustiveOverride=true");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:CheckContracts=false");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:JSpecifyMode=true");
+  }
+
+  @Test
+  void projectLevelPresetTakesPrecedence() throws Exception {
+    // given
+    Files.writeString(
+        getSettingsFile(),
+        // language=kts
+        """
+
+        nullaway {
+            preset(net.ltgt.gradle.nullaway.NullAwayPreset.STRICT)
+            checkContracts.set(true)
+        }
+        """,
+        StandardOpenOption.APPEND);
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        nullaway {
+            preset.set(net.ltgt.gradle.nullaway.NullAwayPreset.FAST)
+        }
+        """,
+        StandardOpenOption.APPEND);
+    writePrintArgumentsTask();
+
+    // when
+    var result = buildWithArgs("printNullAwayArguments");
+
+    // then
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:CheckOptionalEmptiness=false");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:ExhaustiveOverride=false");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:CheckContracts=false");
+    assertThat(result.getOutput()).contains("-XepOpt:NullAway:JSpecifyMode=false");
+  }
+
+  @Test
+  void isConfigurationCacheFriendly() throws Exception {
+    // given
+    writeFailureSource();
+
+    // Prime the configuration cache
+    buildWithArgs("--configuration-cache", "compileJava");
+
+    // when
+    var result = buildWithArgs("--configuration-cache", "compileJava");
+
+    // then
+    assertThat(result.getOutput()).contains("Reusing configuration cache.");
+  }
+
+  private void writePrintArgumentsTask() throws IOException {
+    Files.writeString(
+        getBuildFile(),
+        // language=kts
+        """
+
+        tasks.register("printNullAwayArguments") {
+            val errorproneOptions = tasks.compileJava.get().options.errorprone
+            doLast {
+                errorproneOptions.errorproneArgumentProviders.forEach {
+                    println(it.asArguments().joinToString(" "))
+                }
+            }
+        }
+        """,
+        StandardOpenOption.APPEND);
+  }
+}
@@ -0,0 +1,75 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Merges the {@link NullAwayCheck#getSarifReportFile() SARIF reports} of {@link NullAwayCheck}
+ * tasks into a single SARIF log, with one run per report.
+ *
+ * <p>The runs of each report are extracted in parallel by {@link ExtractSarifRuns} work actions,
+ * then concatenated; reports are streamed rather than loaded in memory.
+ *
+ * <p>The plugin registers such a task in the root project, merging the reports of all projects of
+ * the build (or the projects added to the {@code nullawayReportAggregation} configuration). Only
+ * projects with {@link NullAwayExtension#getSeparateCheckTask() separateCheckTask} (or {@link
+ * NullAwayExtension#getDeferInContinuousBuild() deferInContinuousBuild} in a continuous build)
+ * publish their reports; the task fails if there's none to merge.
+ */
+@CacheableTask
+public abstract class AggregateNullAwayReports extends DefaultTask {
+  /** The SARIF reports to merge. */
+  @InputFiles
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract ConfigurableFileCollection getReports();
+
+  /** The merged SARIF log. */
+  @OutputFile
+  public abstract RegularFileProperty getAggregateReportFile();
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  public void aggregate() {
+    if (getReports().isEmpty()) {
+      throw new GradleException(
+          "No NullAway report to aggregate: SARIF reports are only published by projects whose"
+              + " NullAway check tasks run the analysis, with separateCheckTask (or"
+              + " deferInContinuousBuild in a continuous build) enabled; compile tasks that run"
+              + " NullAway inline don't write any.");
+    }
+    WorkQueue workQueue = getWorkerExecutor().noIsolation();
+    List<File> runsFiles = new ArrayList<>();
+    for (File report : getReports()) {
+      // Check tasks without sources are skipped, without writing a report
+      if (!report.isFile()) {
+        continue;
+      }
+      File runsFile = new File(getTemporaryDir(), "runs-" + runsFiles.size() + ".json");
+      runsFiles.add(runsFile);
+      workQueue.submit(
+          ExtractSarifRuns.class,
+          parameters -> {
+            parameters.getSarifFile().set(report);
+            parameters.getRunsFile().set(runsFile);
+          });
+    }
+    workQueue.await();
+    NullAwaySarif.merge(getAggregateReportFile().get().getAsFile(), runsFiles);
+  }
+}
@@ -0,0 +1,47 @@
+package net.ltgt.gradle.nullaway;
+
+import java.util.List;
+import java.util.Set;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+/**
+ * Whether any of the tasks requested on the command line is one of the configured checking tasks,
+ * and the build isn't an IDE sync.
+ *
+ * <p>Requested tasks are matched by name, ignoring their project path, so {@code check} matches
+ * {@code check}, {@code :check}, and {@code :lib:check}.
+ *
+ * @see NullAwayExtension#getOnlyWhenChecking()
+ */
+public abstract class CheckingTasksRequested
+    implements ValueSource<Boolean, CheckingTasksRequested.Parameters> {
+  /** Set by IntelliJ IDEA when importing (syncing) the Gradle project. */
+  static final String IDEA_SYNC_ACTIVE = "idea.sync.active";
+
+  public interface Parameters extends ValueSourceParameters {
+    ListProperty<String> getRequestedTasks();
+
+    SetProperty<String> getCheckingTasks();
+  }
+
+  @Override
+  public Boolean obtain() {
+    if (Boolean.getBoolean(IDEA_SYNC_ACTIVE)) {
+      return false;
+    }
+    return isRequested(
+        getParameters().getRequestedTasks().get(), getParameters().getCheckingTasks().get());
+  }
+
+  static boolean isRequested(List<String> requestedTasks, Set<String> checkingTasks) {
+    for (String requestedTask : requestedTasks) {
+      if (checkingTasks.contains(requestedTask.substring(requestedTask.lastIndexOf(':') + 1))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
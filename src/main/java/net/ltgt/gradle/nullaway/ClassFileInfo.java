@@ -0,0 +1,242 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The few bits of a class file that {@link NullAwayResultCache} and {@link NullMarkedIndex} need:
+ * the class name, its direct supertypes, its source file name, its annotations, and all the types
+ * it references.
+ *
+ * <p>Referenced types are read from the constant pool: class entries, and any type named in a
+ * descriptor or generic signature (which includes annotation types, and the functional interfaces
+ * of lambdas and method references). This over-approximates the types the class depends on, which
+ * is fine for cache invalidation.
+ */
+final class ClassFileInfo {
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final Pattern TYPE_IN_DESCRIPTOR = Pattern.compile("L([^;<>\\[\\s]+)[;<]");
+
+  private final String name;
+  private final @Nullable String superName;
+  private final List<String> interfaces;
+  private final @Nullable String sourceFile;
+  private final Set<String> referencedTypes;
+  private final Set<String> annotations;
+
+  private ClassFileInfo(
+      String name,
+      @Nullable String superName,
+      List<String> interfaces,
+      @Nullable String sourceFile,
+      Set<String> referencedTypes,
+      Set<String> annotations) {
+    this.name = name;
+    this.superName = superName;
+    this.interfaces = unmodifiableList(interfaces);
+    this.sourceFile = sourceFile;
+    this.referencedTypes = unmodifiableSet(referencedTypes);
+    this.annotations = unmodifiableSet(annotations);
+  }
+
+  /** The internal name of the class, e.g. {@code com/example/Foo$Bar}. */
+  String getName() {
+    return name;
+  }
+
+  @Nullable String getSuperName() {
+    return superName;
+  }
+
+  List<String> getInterfaces() {
+    return interfaces;
+  }
+
+  /** The name of the source file, without its directory, e.g. {@code Foo.java}. */
+  @Nullable String getSourceFile() {
+    return sourceFile;
+  }
+
+  /** The internal names of all the types referenced by the class. */
+  Set<String> getReferencedTypes() {
+    return referencedTypes;
+  }
+
+  /**
+   * The internal names of the annotation types of the class itself (not of its members), whatever
+   * their retention.
+   */
+  Set<String> getAnnotations() {
+    return annotations;
+  }
+
+  static ClassFileInfo parse(byte[] classFile) {
+    try {
+      return parse(new DataInputStream(new ByteArrayInputStream(classFile)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static ClassFileInfo parse(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort(); // minor_version
+    in.readUnsignedShort(); // major_version
+    int constantPoolCount = in.readUnsignedShort();
+    @Nullable String[] utf8 = new String[constantPoolCount];
+    int[] classNameIndexes = new int[constantPoolCount];
+    for (int i = 1; i < constantPoolCount; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = in.readUTF();
+          break;
+        case 7: // Class
+          classNameIndexes[i] = in.readUnsignedShort();
+          break;
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          in.readUnsignedShort();
+          break;
+        case 15: // MethodHandle
+          in.readUnsignedByte();
+          in.readUnsignedShort();
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          in.readInt();
+          break;
+        case 5: // Long
+        case 6: // Double
+          in.readLong();
+          i++; // takes two entries
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    Set<String> referencedTypes = new TreeSet<>();
+    for (int i = 1; i < constantPoolCount; i++) {
+      String value = utf8[i];
+      if (classNameIndexes[i] != 0) {
+        String className = utf8[classNameIndexes[i]];
+        if (className != null && !className.startsWith("[")) {
+          referencedTypes.add(className);
+        }
+      } else if (value != null && value.indexOf(';') >= 0) {
+        Matcher matcher = TYPE_IN_DESCRIPTOR.matcher(value);
+        while (matcher.find()) {
+          referencedTypes.add(matcher.group(1));
+        }
+      }
+    }
+
+    in.readUnsignedShort(); // access_flags
+    String name = className(utf8, classNameIndexes, in.readUnsignedShort());
+    if (name == null) {
+      throw new IOException("Missing class name");
+    }
+    String superName = className(utf8, classNameIndexes, in.readUnsignedShort());
+    List<String> interfaces = new ArrayList<>();
+    for (int i = in.readUnsignedShort(); i > 0; i--) {
+      String interfaceName = className(utf8, classNameIndexes, in.readUnsignedShort());
+      if (interfaceName != null) {
+        interfaces.add(interfaceName);
+      }
+    }
+    // fields, then methods
+    for (int members = 0; members < 2; members++) {
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        in.readUnsignedShort(); // access_flags
+        in.readUnsignedShort(); // name_index
+        in.readUnsignedShort(); // descriptor_index
+        skipAttributes(in);
+      }
+    }
+    @Nullable String sourceFile = null;
+    Set<String> annotations = new TreeSet<>();
+    for (int i = in.readUnsignedShort(); i > 0; i--) {
+      String attributeName = utf8[in.readUnsignedShort()];
+      int length = in.readInt();
+      if ("SourceFile".equals(attributeName)) {
+        sourceFile = utf8[in.readUnsignedShort()];
+      } else if ("RuntimeVisibleAnnotations".equals(attributeName)
+          || "RuntimeInvisibleAnnotations".equals(attributeName)) {
+        for (int j = in.readUnsignedShort(); j > 0; j--) {
+          String descriptor = utf8[in.readUnsignedShort()];
+          if (descriptor != null && descriptor.startsWith("L") && descriptor.endsWith(";")) {
+            annotations.add(descriptor.substring(1, descriptor.length() - 1));
+          }
+          skipElementValuePairs(in);
+        }
+      } else {
+        in.skipBytes(length);
+      }
+    }
+    referencedTypes.remove(name);
+    return new ClassFileInfo(name, superName, interfaces, sourceFile, referencedTypes, annotations);
+  }
+
+  private static void skipElementValuePairs(DataInputStream in) throws IOException {
+    for (int i = in.readUnsignedShort(); i > 0; i--) {
+      in.readUnsignedShort(); // element_name_index
+      skipElementValue(in);
+    }
+  }
+
+  private static void skipElementValue(DataInputStream in) throws IOException {
+    int tag = in.readUnsignedByte();
+    switch (tag) {
+      case 'e': // enum_const_value
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        break;
+      case '@': // annotation_value
+        in.readUnsignedShort(); // type_index
+        skipElementValuePairs(in);
+        break;
+      case '[': // array_value
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+          skipElementValue(in);
+        }
+        break;
+      default: // const_value_index or class_info_index
+        in.readUnsignedShort();
+    }
+  }
+
+  private static void skipAttributes(DataInputStream in) throws IOException {
+    for (int i = in.readUnsignedShort(); i > 0; i--) {
+      in.readUnsignedShort(); // attribute_name_index
+      in.skipBytes(in.readInt());
+    }
+  }
+
+  private static @Nullable String className(
+      @Nullable String[] utf8, int[] classNameIndexes, int index) {
+    return index == 0 ? null : utf8[classNameIndexes[index]];
+  }
+}
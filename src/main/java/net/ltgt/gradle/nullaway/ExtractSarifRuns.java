@@ -0,0 +1,24 @@
+package net.ltgt.gradle.nullaway;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Copies the runs of a SARIF report written by a {@link NullAwayCheck} task, to be merged by the
+ * {@link AggregateNullAwayReports} task.
+ */
+public abstract class ExtractSarifRuns implements WorkAction<ExtractSarifRuns.Parameters> {
+  public interface Parameters extends WorkParameters {
+    RegularFileProperty getSarifFile();
+
+    RegularFileProperty getRunsFile();
+  }
+
+  @Override
+  public void execute() {
+    NullAwaySarif.extractRuns(
+        getParameters().getSarifFile().get().getAsFile(),
+        getParameters().getRunsFile().get().getAsFile());
+  }
+}
@@ -0,0 +1,134 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.emptyList;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Summarizes the nullness configuration of a source set for the projects depending on it: the
+ * packages of the source set that NullAway treats as annotated or unannotated, and the known
+ * initializers.
+ *
+ * <p>The properties are wired to the NullAway options of the source set's {@code JavaCompile}
+ * task.
+ *
+ * @see NullAwayExtension#getShareNullnessSummaries()
+ * @see NullAwayOptions#getDependencyNullnessSummaryFiles()
+ */
+@CacheableTask
+public abstract class GenerateNullnessSummary extends DefaultTask {
+  /** The source files, whose packages are summarized. */
+  @InputFiles
+  @IgnoreEmptyDirectories
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getSources();
+
+  /** The source directories, used to compute the package of each source file. */
+  @Internal
+  public abstract ConfigurableFileCollection getSourceDirectories();
+
+  /** The {@link NullAwayOptions#getOnlyNullMarked() onlyNullMarked} option. */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getOnlyNullMarked();
+
+  /** The {@link NullAwayOptions#getAnnotatedPackages() annotatedPackages} option. */
+  @Input
+  @Optional
+  public abstract ListProperty<String> getAnnotatedPackages();
+
+  /** The {@link NullAwayOptions#getUnannotatedSubPackages() unannotatedSubPackages} option. */
+  @Input
+  @Optional
+  public abstract ListProperty<String> getUnannotatedSubPackages();
+
+  /** The {@link NullAwayOptions#getNullMarkedIndexFile() nullMarkedIndexFile} option. */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getNullMarkedIndexFile();
+
+  /** The {@link NullAwayOptions#getKnownInitializers() knownInitializers} option. */
+  @Input
+  @Optional
+  public abstract ListProperty<String> getKnownInitializers();
+
+  /** The {@link NullAwayOptions#getKnownInitializersFile() knownInitializersFile} option. */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getKnownInitializersFile();
+
+  /** The summary file. */
+  @OutputFile
+  public abstract RegularFileProperty getSummaryFile();
+
+  @TaskAction
+  public void summarize() {
+    Set<String> packages = new TreeSet<>();
+    for (File source : getSources()) {
+      if (!source.getName().endsWith(".java")) {
+        continue;
+      }
+      Path path = source.toPath().normalize();
+      for (File sourceDirectory : getSourceDirectories()) {
+        Path dir = sourceDirectory.toPath().normalize();
+        Path parent = path.getParent();
+        if (path.startsWith(dir) && parent != null && !parent.equals(dir)) {
+          packages.add(dir.relativize(parent).toString().replace(File.separatorChar, '.'));
+          break;
+        }
+      }
+    }
+
+    List<String> annotated = new ArrayList<>();
+    if (!getOnlyNullMarked().getOrElse(false)) {
+      annotated.addAll(getAnnotatedPackages().getOrElse(emptyList()));
+    }
+    List<String> unannotated = new ArrayList<>(getUnannotatedSubPackages().getOrElse(emptyList()));
+    if (getNullMarkedIndexFile().isPresent()) {
+      NullMarkedIndex index = NullMarkedIndex.read(getNullMarkedIndexFile().get().getAsFile());
+      if (index.isModuleNullMarked()) {
+        annotated.addAll(packages);
+      } else {
+        annotated.addAll(PackagePrefixTrie.exactEntries(index.getNullMarkedPackages()));
+      }
+      unannotated.addAll(PackagePrefixTrie.exactEntries(index.getNullUnmarkedPackages()));
+    }
+
+    new NullnessSummary(
+            NullnessSummary.annotatedPackages(packages, annotated, unannotated),
+            NullnessSummary.unannotatedSubPackages(packages, unannotated),
+            listOption(getKnownInitializers(), getKnownInitializersFile()))
+        .write(getSummaryFile().get().getAsFile());
+  }
+
+  private static List<String> listOption(ListProperty<String> value, RegularFileProperty file) {
+    List<String> list = new ArrayList<>(value.getOrElse(emptyList()));
+    if (file.isPresent()) {
+      list.addAll(NullAwayOptions.readListFile(file.get().getAsFile()));
+    }
+    return list;
+  }
+}
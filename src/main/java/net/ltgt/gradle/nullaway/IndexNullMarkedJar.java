@@ -0,0 +1,36 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.File;
+import org.gradle.api.artifacts.transform.CacheableTransform;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+
+/**
+ * Indexes the packages of a JAR that are annotated with JSpecify's {@code @NullMarked} or
+ * {@code @NullUnmarked}, or that are part of a {@code @NullMarked} module.
+ *
+ * @see NullAwayExtension#getIndexLibraryNullMarkedPackages()
+ * @see NullMarkedIndex#scanJar(File)
+ */
+@CacheableTransform
+public abstract class IndexNullMarkedJar implements TransformAction<TransformParameters.None> {
+  @InputArtifact
+  @Classpath
+  public abstract Provider<FileSystemLocation> getInputArtifact();
+
+  @Override
+  public void transform(TransformOutputs outputs) {
+    File input = getInputArtifact().get().getAsFile();
+    if (!input.isFile()) {
+      return;
+    }
+    NullMarkedIndex.writeEntries(
+        outputs.file(input.getName().replaceFirst("\\.jar$", "") + "-null-marked-index.txt"),
+        NullMarkedIndex.scanJar(input));
+  }
+}
@@ -0,0 +1,68 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+
+/**
+ * Indexes the {@code package-info.java} and {@code module-info.java} files of a source set that are
+ * annotated with JSpecify's {@code @NullMarked} or {@code @NullUnmarked}.
+ *
+ * <p>The task is incremental: only the added or changed files are read, and the entries of the
+ * other files are kept from the previous index.
+ *
+ * @see NullAwayExtension#getIndexNullMarkedPackages()
+ */
+@CacheableTask
+public abstract class IndexNullMarkedPackages extends DefaultTask {
+  /** The {@code package-info.java} and {@code module-info.java} files to index. */
+  @Incremental
+  @InputFiles
+  @IgnoreEmptyDirectories
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getSources();
+
+  /** The index file. */
+  @OutputFile
+  public abstract RegularFileProperty getIndexFile();
+
+  @TaskAction
+  public void index(InputChanges inputChanges) {
+    File indexFile = getIndexFile().get().getAsFile();
+    Map<String, String[]> entries =
+        inputChanges.isIncremental() && indexFile.isFile()
+            ? NullMarkedIndex.readEntries(indexFile)
+            : new TreeMap<>();
+    for (FileChange change : inputChanges.getFileChanges(getSources())) {
+      if (change.getFileType() == FileType.DIRECTORY) {
+        continue;
+      }
+      String path = change.getNormalizedPath();
+      String[] entry =
+          change.getChangeType() == ChangeType.REMOVED
+              ? null
+              : NullMarkedIndex.scan(change.getFile(), path);
+      if (entry == null) {
+        entries.remove(path);
+      } else {
+        entries.put(path, entry);
+      }
+    }
+    NullMarkedIndex.writeEntries(indexFile, entries);
+  }
+}
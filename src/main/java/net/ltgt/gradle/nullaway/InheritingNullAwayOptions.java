@@ -0,0 +1,40 @@
+package net.ltgt.gradle.nullaway;
+
+import javax.inject.Inject;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Task-level options that only inherit the project-level options when they're first read.
+ *
+ * <p>Gradle instantiates managed properties on first access, so until the task's {@code
+ * options.errorprone.nullaway { }} block is actually used, those options are an empty shell that
+ * points to the options shared by all tasks of the project.
+ *
+ * <p>Like with conventions, a list property configured on the task, even only through {@code add},
+ * replaces the inherited list rather than adding to it.
+ *
+ * @see NullAwayExtension#getShareTaskOptions()
+ */
+abstract class InheritingNullAwayOptions extends NullAwayOptions {
+  private final NullAwayOptions defaults;
+  private boolean inherited;
+
+  @Inject
+  public InheritingNullAwayOptions(NullAwayOptions defaults) {
+    this.defaults = defaults;
+  }
+
+  @Override
+  @Nullable NullAwayPreset inheritedPreset() {
+    return defaults.effectivePreset();
+  }
+
+  @Override
+  void beforeRead() {
+    if (!inherited) {
+      inherited = true;
+      conventionsFrom(defaults);
+    }
+    super.beforeRead();
+  }
+}
@@ -0,0 +1,97 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import javax.inject.Inject;
+import org.gradle.api.artifacts.transform.CacheableTransform;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+
+/**
+ * Runs NullAway's JarInfer on a JAR, producing a JAR containing the inferred library models for
+ * NullAway, or nothing if JarInfer couldn't process it.
+ *
+ * @see NullAwayExtension#getInferLibraryModels()
+ */
+@CacheableTransform
+public abstract class JarInferTransform implements TransformAction<JarInferTransform.Parameters> {
+  private static final Logger LOGGER = Logging.getLogger(JarInferTransform.class);
+
+  static final String JARINFER_MAIN_CLASS = "com.uber.nullaway.jarinfer.JarInfer";
+
+  public interface Parameters extends TransformParameters {
+    /** The classpath containing JarInfer's command-line interface. */
+    @Classpath
+    ConfigurableFileCollection getJarInferClasspath();
+  }
+
+  @InputArtifact
+  @Classpath
+  public abstract Provider<FileSystemLocation> getInputArtifact();
+
+  @Inject
+  protected abstract ExecOperations getExecOperations();
+
+  @Override
+  public void transform(TransformOutputs outputs) {
+    File input = getInputArtifact().get().getAsFile();
+    if (!input.isFile()) {
+      return;
+    }
+    String name = input.getName().replaceFirst("\\.jar$", "");
+    File model;
+    try {
+      model = File.createTempFile(name, "-jarinfer.jar");
+      Files.delete(model.toPath());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      ExecResult result =
+          getExecOperations()
+              .javaexec(
+                  spec -> {
+                    spec.classpath(getParameters().getJarInferClasspath());
+                    spec.getMainClass().set(JARINFER_MAIN_CLASS);
+                    spec.args("-i", input.getAbsolutePath(), "-o", model.getAbsolutePath());
+                    spec.setStandardOutput(output);
+                    spec.setErrorOutput(output);
+                    spec.setIgnoreExitValue(true);
+                  });
+      // Some JARs can't be processed by JarInfer; NullAway then just has no model for them
+      if (result.getExitValue() != 0) {
+        LOGGER.warn(
+            "JarInfer failed to process {}, NullAway won't have inferred models for it:\n{}",
+            input,
+            new String(output.toByteArray(), StandardCharsets.UTF_8).trim());
+        return;
+      }
+      if (model.isFile()) {
+        Files.move(
+            model.toPath(),
+            outputs.file(name + "-jarinfer.jar").toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      model.delete();
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Lists the packages of a source set that contain files changed since a given git revision,
+ * according to the local git repository: committed changes since the merge base of that revision
+ * and {@code HEAD}, uncommitted changes, and untracked files.
+ *
+ * <p>The task always runs, as the state of the git repository isn't tracked as an input; tasks
+ * using its output are only affected when the list of packages changes.
+ *
+ * @see NullAwayExtension#getChangedSince()
+ */
+public abstract class ListChangedPackages extends DefaultTask {
+  private static final Pattern COMMENT = Pattern.compile("//[^\r\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+  private static final Pattern PACKAGE =
+      Pattern.compile("^\\s*package\\s+([\\w$.\\s]+?)\\s*;", Pattern.MULTILINE);
+  private static final Pattern IMPORT =
+      Pattern.compile(
+          "^\\s*import\\s+(?:static\\s+)?([\\w$.\\s]+?)(?:\\s*\\.\\s*\\*)?\\s*;",
+          Pattern.MULTILINE);
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  @SuppressWarnings("this-escape")
+  public ListChangedPackages() {
+    getOutputs().upToDateWhen(task -> false);
+  }
+
+  /** The git revision to compare to, e.g. {@code origin/main}. */
+  @Input
+  public abstract Property<String> getBaseRevision();
+
+  /**
+   * Whether to also list the packages of the source files that import anything from a changed
+   * package.
+   */
+  @Input
+  public abstract Property<Boolean> getIncludeDependentPackages();
+
+  /** The source files, scanned for imports when including dependent packages. */
+  @InputFiles
+  @IgnoreEmptyDirectories
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getSources();
+
+  /** The source directories, used to compute the package of each changed file. */
+  @Internal
+  public abstract ConfigurableFileCollection getSourceDirectories();
+
+  /** The directory git is run from. */
+  @Internal
+  public abstract DirectoryProperty getWorkingDirectory();
+
+  /** The output file, listing one package per line. */
+  @OutputFile
+  public abstract RegularFileProperty getPackagesFile();
+
+  @Inject
+  protected abstract ExecOperations getExecOperations();
+
+  @TaskAction
+  public void list() {
+    File workingDir = getWorkingDirectory().get().getAsFile();
+    File repositoryDir = new File(git(workingDir, "rev-parse", "--show-toplevel").trim());
+    String mergeBase = git(workingDir, "merge-base", getBaseRevision().get(), "HEAD").trim();
+    List<String> changedFiles = new ArrayList<>();
+    changedFiles.addAll(
+        split(git(workingDir, "diff", "--name-only", "--no-renames", "-z", mergeBase)));
+    changedFiles.addAll(
+        split(git(workingDir, "ls-files", "--others", "--exclude-standard", "--full-name", "-z")));
+
+    Set<String> packages = new TreeSet<>();
+    for (String changedFile : changedFiles) {
+      if (!changedFile.endsWith(".java")) {
+        continue;
+      }
+      Path path = new File(repositoryDir, changedFile).toPath().normalize();
+      for (File sourceDirectory : getSourceDirectories()) {
+        Path dir = sourceDirectory.toPath().normalize();
+        Path parent = path.getParent();
+        if (path.startsWith(dir) && parent != null && !parent.equals(dir)) {
+          packages.add(dir.relativize(parent).toString().replace(File.separatorChar, '.'));
+          break;
+        }
+      }
+    }
+    getLogger().info("Packages changed since {}: {}", getBaseRevision().get(), packages);
+
+    if (getIncludeDependentPackages().get() && !packages.isEmpty()) {
+      Set<String> dependentPackages = new TreeSet<>();
+      for (File source : getSources()) {
+        if (!source.getName().endsWith(".java")) {
+          continue;
+        }
+        @Nullable String dependentPackage;
+        try {
+          dependentPackage =
+              dependentPackage(
+                  new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8),
+                  packages);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        if (dependentPackage != null && !packages.contains(dependentPackage)) {
+          dependentPackages.add(dependentPackage);
+        }
+      }
+      getLogger().info("Packages depending on them: {}", dependentPackages);
+      packages.addAll(dependentPackages);
+    }
+
+    try {
+      Files.write(getPackagesFile().get().getAsFile().toPath(), packages, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the package of the given source if it imports anything from one of the given packages,
+   * or {@code null} otherwise.
+   *
+   * <p>Imported names are split into a package and class names assuming conventional naming: the
+   * package is made of all the segments before the first one that starts with an uppercase letter.
+   */
+  static @Nullable String dependentPackage(String source, Set<String> packages) {
+    source = COMMENT.matcher(source).replaceAll(" ");
+    Matcher packageMatcher = PACKAGE.matcher(source);
+    if (!packageMatcher.find()) {
+      return null;
+    }
+    Matcher importMatcher = IMPORT.matcher(source);
+    while (importMatcher.find()) {
+      String[] segments = WHITESPACE.matcher(importMatcher.group(1)).replaceAll("").split("\\.");
+      int i = 0;
+      while (i < segments.length
+          && (segments[i].isEmpty() || !Character.isUpperCase(segments[i].charAt(0)))) {
+        i++;
+      }
+      if (packages.contains(String.join(".", Arrays.asList(segments).subList(0, i)))) {
+        return WHITESPACE.matcher(packageMatcher.group(1)).replaceAll("");
+      }
+    }
+    return null;
+  }
+
+  private String git(File workingDir, String... args) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteArrayOutputStream error = new ByteArrayOutputStream();
+    ExecResult result =
+        getExecOperations()
+            .exec(
+                spec -> {
+                  spec.setWorkingDir(workingDir);
+                  spec.setExecutable("git");
+                  spec.args((Object[]) args);
+                  spec.setStandardOutput(output);
+                  spec.setErrorOutput(error);
+                  spec.setIgnoreExitValue(true);
+                });
+    if (result.getExitValue() != 0) {
+      throw new GradleException(
+          "Command 'git "
+              + String.join(" ", args)
+              + "' failed: "
+              + new String(error.toByteArray(), StandardCharsets.UTF_8).trim());
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static List<String> split(String nulSeparated) {
+    List<String> result = new ArrayList<>();
+    for (String s : nulSeparated.split("\0")) {
+      if (!s.isEmpty()) {
+        result.add(s);
+      }
+    }
+    return result;
+  }
+}
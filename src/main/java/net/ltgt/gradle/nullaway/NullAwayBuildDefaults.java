@@ -0,0 +1,56 @@
+package net.ltgt.gradle.nullaway;
+
+import javax.inject.Inject;
+import org.gradle.api.GradleException;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceRegistration;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Holds the build-wide NullAway options configured by the {@link NullAwaySettingsPlugin settings
+ * plugin}, to be used as conventions by all projects.
+ *
+ * <p>Those options can't be isolated as build service parameters, so the service creates them
+ * itself and the settings plugin exposes them as its extension; projects then use them at
+ * configuration time only.
+ */
+public abstract class NullAwayBuildDefaults
+    implements BuildService<BuildServiceParameters.None> {
+  static final String SERVICE_NAME = "nullawayBuildDefaults";
+
+  private final NullAwayOptions options;
+
+  @Inject
+  public NullAwayBuildDefaults(ObjectFactory objects) {
+    options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+  }
+
+  NullAwayOptions getOptions() {
+    return options;
+  }
+
+  static @Nullable NullAwayOptions find(Gradle gradle) {
+    BuildServiceRegistration<?, ?> registration =
+        gradle.getSharedServices().getRegistrations().findByName(SERVICE_NAME);
+    if (registration == null) {
+      return null;
+    }
+    Object service = registration.getService().get();
+    if (!(service instanceof NullAwayBuildDefaults)) {
+      // The plugin has been added again to a build script classpath, in another classloader
+      throw new GradleException(
+          "The build-wide NullAway defaults can't be used, as the "
+              + NullAwaySettingsPlugin.PLUGIN_ID
+              + " and "
+              + NullAwayPlugin.PLUGIN_ID
+              + " plugins have been loaded in different classloaders. Apply "
+              + NullAwayPlugin.PLUGIN_ID
+              + " without a version, so it's resolved from the settings classpath.");
+    }
+    return ((NullAwayBuildDefaults) service).getOptions();
+  }
+}
@@ -0,0 +1,196 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Collects the compile time, number of source files, and preset of every {@code JavaCompile} task
+ * that ran NullAway during the build, to be summarized at the end of the build by {@link
+ * NullAwayBuildSummary}.
+ *
+ * <p>The compile time is the wall time of the whole task, {@code javac} included, not only
+ * NullAway's share; the number of source files is that of all the task's sources, even when only
+ * some of them were recompiled incrementally.
+ *
+ * <p>Tasks report to the service concurrently, from actions the plugin adds before and after
+ * them; the service only keeps track of tasks that reported both their start and end. Before
+ * Gradle 8.1, which introduced dataflow actions, the summary is reported when the service is
+ * closed, without the build result.
+ *
+ * @see NullAwayExtension#getReportBuildOverhead()
+ */
+public abstract class NullAwayBuildService
+    implements BuildService<NullAwayBuildService.Parameters>, AutoCloseable {
+  static final String SERVICE_NAME = "nullawayBuildService";
+
+  private static final Logger LOGGER = Logging.getLogger(NullAwayBuildService.class);
+
+  public interface Parameters extends BuildServiceParameters {
+    /** The CSV file where a line is appended for each build. */
+    RegularFileProperty getHistoryFile();
+  }
+
+  private final Map<String, Long> startTimes = new ConcurrentHashMap<>();
+  private final Queue<Record> records = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean reported = new AtomicBoolean();
+
+  void taskStarted(String path) {
+    startTimes.put(path, System.nanoTime());
+  }
+
+  void taskFinished(String path, int files, String preset) {
+    Long start = startTimes.remove(path);
+    if (start != null) {
+      records.add(new Record(path, System.nanoTime() - start, files, preset));
+    }
+  }
+
+  /**
+   * Logs the summary of the build and appends it to the history file, unless no task ran NullAway
+   * or it's already been reported.
+   *
+   * @param failed whether the build failed, or {@code null} if unknown
+   */
+  void report(@Nullable Boolean failed) {
+    List<Record> records = new ArrayList<>(this.records);
+    if (records.isEmpty() || !reported.compareAndSet(false, true)) {
+      return;
+    }
+    for (String line : summarize(records)) {
+      LOGGER.lifecycle(line);
+    }
+    appendHistory(
+        getParameters().getHistoryFile().get().getAsFile(), Instant.now(), failed, records);
+  }
+
+  @Override
+  public void close() {
+    report(null);
+  }
+
+  /** Returns the summary of the given records, to be logged; empty if there's none. */
+  static List<String> summarize(List<Record> records) {
+    List<String> lines = new ArrayList<>();
+    if (records.isEmpty()) {
+      return lines;
+    }
+    List<Record> sorted = new ArrayList<>(records);
+    sorted.sort(
+        (a, b) -> {
+          int c = Long.compare(b.nanos, a.nanos);
+          return c != 0 ? c : a.path.compareTo(b.path);
+        });
+    int width = "Task".length();
+    for (Record record : sorted) {
+      width = Math.max(width, record.path.length());
+    }
+    String format = "  %-" + width + "s  %12s  %7s  %s";
+    lines.add(
+        String.format(
+            Locale.ROOT,
+            "Compile tasks running NullAway: %d, with %d source file(s), taking %s of compile time"
+                + " (javac included)",
+            sorted.size(),
+            totalFiles(sorted),
+            seconds(totalNanos(sorted))));
+    lines.add(String.format(Locale.ROOT, format, "Task", "Compile time", "Sources", "Preset"));
+    for (Record record : sorted) {
+      lines.add(
+          String.format(
+              Locale.ROOT,
+              format,
+              record.path,
+              seconds(record.nanos),
+              record.files,
+              record.preset));
+    }
+    return lines;
+  }
+
+  /** Appends a line for the given records to the history file, creating it as needed. */
+  static void appendHistory(
+      File historyFile, Instant timestamp, @Nullable Boolean failed, List<Record> records) {
+    Set<String> presets = new TreeSet<>();
+    for (Record record : records) {
+      presets.add(record.preset);
+    }
+    String line =
+        String.format(
+            Locale.ROOT,
+            "%s,%s,%d,%d,%d,%s%n",
+            timestamp,
+            failed == null ? "UNKNOWN" : failed ? "FAILED" : "SUCCESS",
+            records.size(),
+            totalFiles(records),
+            totalNanos(records) / 1_000_000,
+            String.join(";", presets));
+    try {
+      Files.createDirectories(historyFile.toPath().getParent());
+      if (!historyFile.exists()) {
+        line = "timestamp,result,tasks,files,millis,presets" + System.lineSeparator() + line;
+      }
+      Files.write(
+          historyFile.toPath(),
+          line.getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long totalNanos(List<Record> records) {
+    long total = 0;
+    for (Record record : records) {
+      total += record.nanos;
+    }
+    return total;
+  }
+
+  private static int totalFiles(List<Record> records) {
+    int total = 0;
+    for (Record record : records) {
+      total += record.files;
+    }
+    return total;
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.3fs", nanos / 1_000_000_000.0);
+  }
+
+  static final class Record {
+    final String path;
+    final long nanos;
+    final int files;
+    final String preset;
+
+    Record(String path, long nanos, int files, String preset) {
+      this.path = path;
+      this.nanos = nanos;
+      this.files = files;
+      this.preset = preset;
+    }
+  }
+}
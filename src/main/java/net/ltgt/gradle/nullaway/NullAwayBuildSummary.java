@@ -0,0 +1,55 @@
+package net.ltgt.gradle.nullaway;
+
+import javax.inject.Inject;
+import org.gradle.api.flow.BuildWorkResult;
+import org.gradle.api.flow.FlowAction;
+import org.gradle.api.flow.FlowParameters;
+import org.gradle.api.flow.FlowProviders;
+import org.gradle.api.flow.FlowScope;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.Input;
+
+/**
+ * Reports the overhead of NullAway collected by the {@link NullAwayBuildService} at the end of the
+ * build, along with the build result.
+ *
+ * <p>Requires Gradle 8.1 or later.
+ */
+public abstract class NullAwayBuildSummary implements FlowAction<NullAwayBuildSummary.Parameters> {
+  public interface Parameters extends FlowParameters {
+    @ServiceReference(NullAwayBuildService.SERVICE_NAME)
+    Property<NullAwayBuildService> getService();
+
+    @Input
+    Property<BuildWorkResult> getBuildResult();
+  }
+
+  @Override
+  public void execute(Parameters parameters) {
+    NullAwayBuildService service = parameters.getService().get();
+    service.report(parameters.getBuildResult().get().getFailure().isPresent());
+  }
+
+  /** Registers the action; instantiated through the project's {@code ObjectFactory}. */
+  static class Registrar {
+    private final FlowScope flowScope;
+    private final FlowProviders flowProviders;
+
+    @Inject
+    public Registrar(FlowScope flowScope, FlowProviders flowProviders) {
+      this.flowScope = flowScope;
+      this.flowProviders = flowProviders;
+    }
+
+    void register(Provider<NullAwayBuildService> service) {
+      flowScope.always(
+          NullAwayBuildSummary.class,
+          spec -> {
+            spec.getParameters().getService().set(service);
+            spec.getParameters().getBuildResult().set(flowProviders.getBuildWorkResult());
+          });
+    }
+  }
+}
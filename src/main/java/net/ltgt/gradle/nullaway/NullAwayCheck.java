@@ -0,0 +1,476 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.emptyList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.jvm.toolchain.JavaCompiler;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Runs NullAway on Java sources, outside of their compilation.
+ *
+ * <p>The sources are analyzed by {@code javac} in a worker process, with Error Prone only running
+ * NullAway, and stopping before generating any class file. Findings are written to a {@link
+ * #getReportFile() report file} and a {@link #getSarifReportFile() SARIF report file}, and logged;
+ * the task fails if any of them is an error.
+ *
+ * <p>Large source sets can be split by package into several {@link #getShards() shards}, analyzed
+ * in parallel, and results can be {@link #getCacheResults() cached} for each source file across
+ * executions.
+ *
+ * @see NullAwayExtension#getSeparateCheckTask()
+ */
+@CacheableTask
+public abstract class NullAwayCheck extends DefaultTask {
+  // See https://errorprone.info/docs/installation#maven
+  private static final List<String> JVM_ARGS_STRONG_ENCAPSULATION =
+      Arrays.asList(
+          "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+          "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+          "--add-opens=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+          "--add-opens=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED");
+
+  @SuppressWarnings("this-escape")
+  public NullAwayCheck() {
+    getIgnoreFailures().convention(false);
+    onlyIf(
+        task -> {
+          NullAwayCheck check = (NullAwayCheck) task;
+          return check.getErrorProneEnabled().getOrElse(true)
+              && !check.getNullAwayOptions().get().isDisabled();
+        });
+  }
+
+  /** The Java source files to analyze. */
+  @InputFiles
+  @SkipWhenEmpty
+  @IgnoreEmptyDirectories
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getSource();
+
+  /** The classpath to analyze the sources against. */
+  @Classpath
+  public abstract ConfigurableFileCollection getClasspath();
+
+  /** The classpath containing Error Prone and NullAway. */
+  @Classpath
+  public abstract ConfigurableFileCollection getErrorproneClasspath();
+
+  /** The NullAway options. */
+  @Nested
+  public abstract Property<NullAwayOptions> getNullAwayOptions();
+
+  /** Whether Error Prone is enabled; the task is skipped otherwise. */
+  @Internal
+  public abstract Property<Boolean> getErrorProneEnabled();
+
+  /**
+   * A regex matching the paths of the source files Error Prone shouldn't report anything about;
+   * NullAway's {@link NullAwayOptions#getChangedPackagesFile() changedPackagesFile} adds to it.
+   */
+  @Input
+  @Optional
+  public abstract Property<String> getExcludedPaths();
+
+  /** Additional arguments passed to Error Prone. */
+  @Input
+  public abstract ListProperty<String> getErrorproneArgs();
+
+  /**
+   * Additional arguments passed to {@code javac}, such as {@code --release}; {@code -Werror} turns
+   * NullAway warnings into errors.
+   */
+  @Input
+  public abstract ListProperty<String> getCompilerArgs();
+
+  /**
+   * The Java compiler (from a toolchain) whose JDK is used to run the analysis; defaults to the JDK
+   * that runs Gradle.
+   */
+  @Nested
+  @Optional
+  public abstract Property<JavaCompiler> getJavaCompiler();
+
+  /**
+   * The maximum number of work items the sources are split into, by package, to be analyzed in
+   * parallel; defaults to the maximum number of workers.
+   *
+   * <p>Each shard is analyzed against the compiled classes of the whole source set, so the findings
+   * don't depend on the number of shards.
+   */
+  @Internal
+  public abstract Property<Integer> getShards();
+
+  /**
+   * Whether to cache the findings for each source file across executions; defaults to false.
+   *
+   * <p>Source files are then only analyzed again if they changed, or if the class files of any of
+   * the types they depend on changed (including from other projects and libraries), or if the
+   * analysis configuration changed. Otherwise their cached findings are reported again.
+   *
+   * @see #getResultCacheFile()
+   */
+  @Internal
+  public abstract Property<Boolean> getCacheResults();
+
+  /** The file where findings are cached for each source file. */
+  @LocalState
+  public abstract RegularFileProperty getResultCacheFile();
+
+  /** The directory containing the classes compiled from the sources, used to cache results. */
+  @Internal
+  public abstract DirectoryProperty getClassesDirectory();
+
+  /**
+   * Whether findings are only reported, without failing the task on errors; defaults to false.
+   */
+  @Input
+  public abstract Property<Boolean> getIgnoreFailures();
+
+  /** The report file, listing the findings with one line each. */
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  /**
+   * The SARIF report file, listing the same findings as the {@link #getReportFile() report file} as
+   * structured results.
+   *
+   * <p>Both reports are written once the findings of all shards, and cached ones, have been
+   * collected in memory and sorted.
+   *
+   * @see AggregateNullAwayReports
+   */
+  @OutputFile
+  public abstract RegularFileProperty getSarifReportFile();
+
+  /**
+   * The path of the project directory relative to the root directory of the build, prepended to
+   * the paths of the source files in the SARIF report; ends with a slash unless empty.
+   */
+  @Input
+  public abstract Property<String> getSarifPathPrefix();
+
+  /**
+   * Whether to measure the time NullAway spends analyzing each compilation unit, and write it to
+   * the {@link #getProfileReportFile() profile report file}; defaults to false.
+   *
+   * <p>When {@link #getCacheResults() caching results}, only the source files that are analyzed
+   * again are measured.
+   */
+  @Input
+  @Option(
+      option = "profile-analysis",
+      description = "Reports the time NullAway spends on each compilation unit.")
+  public abstract Property<Boolean> getProfile();
+
+  /**
+   * The JSON report of the time spent by {@code javac} and by NullAway, listing the compilation
+   * units NullAway spent the most time on first; only written when {@link #getProfile() profiling}.
+   */
+  @OutputFile
+  public abstract RegularFileProperty getProfileReportFile();
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @Inject
+  protected abstract ProjectLayout getLayout();
+
+  @TaskAction
+  public void check() {
+    List<String> arguments = new ArrayList<>(getCompilerArgs().get());
+    // -Werror is applied when reporting findings: javac would report its pathless error, which
+    // prevents caching the findings, and couldn't apply it to cached ones anyway
+    arguments.removeIf(argument -> argument.equals("-Werror"));
+    List<String> errorproneArgs = new ArrayList<>();
+    errorproneArgs.add("-XepDisableAllChecks");
+    NullAwayOptions nullawayOptions = getNullAwayOptions().get();
+    errorproneArgs.addAll(nullawayOptions.asArguments());
+    @Nullable String excludedPaths = nullawayOptions.excludedPaths(getExcludedPaths().getOrNull());
+    if (excludedPaths != null) {
+      errorproneArgs.add("-XepExcludedPaths:" + excludedPaths);
+    }
+    errorproneArgs.addAll(getErrorproneArgs().get());
+    arguments.add("-Xplugin:ErrorProne " + String.join(" ", errorproneArgs));
+
+    Path projectDir = getLayout().getProjectDirectory().getAsFile().toPath();
+    Map<String, File> sources = new TreeMap<>();
+    for (File source : getSource()) {
+      if (source.getName().equals("module-info.java")) {
+        // The sources are analyzed against a classpath, where the required modules can't be found
+        throw new GradleException(
+            "NullAway check tasks don't support modular source sets, found "
+                + source
+                + "; run NullAway during compilation instead (without separateCheckTask)");
+      }
+      sources.put(NullAwayCheckAction.reportPath(projectDir, source), source);
+    }
+    // Merged and sorted, so the report doesn't depend on how sources were split or cached
+    Set<String> findings = new TreeSet<>(NullAwayCheckAction.FINDING_ORDER);
+    @Nullable List<File> profiles = getProfile().get() ? new ArrayList<>() : null;
+    if (getCacheResults().get()) {
+      File cacheFile = getResultCacheFile().get().getAsFile();
+      Map<String, NullAwayResultCache.Entry> cache = NullAwayResultCache.read(cacheFile);
+      Map<String, String> keys =
+          NullAwayResultCache.computeKeys(
+              cacheConfiguration(arguments),
+              sources,
+              getClassesDirectory().get().getAsFile(),
+              getClasspath());
+      Map<String, File> changedSources = new TreeMap<>();
+      Map<String, NullAwayResultCache.Entry> newCache = new TreeMap<>();
+      for (Map.Entry<String, File> source : sources.entrySet()) {
+        NullAwayResultCache.Entry entry = cache.get(source.getKey());
+        if (entry != null && entry.getKey().equals(keys.get(source.getKey()))) {
+          findings.addAll(entry.getFindings());
+          newCache.put(source.getKey(), entry);
+        } else {
+          changedSources.put(source.getKey(), source.getValue());
+        }
+      }
+      getLogger()
+          .info(
+              "Reusing cached NullAway results for {} out of {} source files",
+              sources.size() - changedSources.size(),
+              sources.size());
+
+      List<String> newFindings =
+          changedSources.isEmpty()
+              ? emptyList()
+              : analyze(arguments, changedSources.values(), profiles);
+      findings.addAll(newFindings);
+      // Findings not related to a specific source file (e.g. an invalid option) can't be cached,
+      // and they could hide findings that would have been reported otherwise
+      Map<String, List<String>> findingsByPath = new TreeMap<>();
+      boolean cacheable = true;
+      for (String finding : newFindings) {
+        String path = NullAwayCheckAction.findingPath(finding);
+        if (path == null) {
+          cacheable = false;
+          break;
+        }
+        findingsByPath.computeIfAbsent(path, ignored -> new ArrayList<>()).add(finding);
+      }
+      if (cacheable) {
+        for (String path : changedSources.keySet()) {
+          String key = keys.get(path);
+          if (key != null) {
+            newCache.put(
+                path,
+                new NullAwayResultCache.Entry(
+                    key, findingsByPath.getOrDefault(path, emptyList())));
+          }
+        }
+        NullAwayResultCache.write(cacheFile, newCache);
+      }
+    } else {
+      findings.addAll(analyze(arguments, sources.values(), profiles));
+    }
+
+    File profileReportFile = getProfileReportFile().get().getAsFile();
+    if (profiles != null) {
+      NullAwayProfiler.writeReport(profileReportFile, profiles);
+      getLogger().lifecycle("NullAway profile written to {}", profileReportFile);
+    } else {
+      try {
+        Files.deleteIfExists(profileReportFile.toPath());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    File reportFile = getReportFile().get().getAsFile();
+    try {
+      Files.write(reportFile.toPath(), findings, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    NullAwaySarif.write(
+        getSarifReportFile().get().getAsFile(), getPath(), getSarifPathPrefix().get(), findings);
+    reportFindings(findings, reportFile);
+  }
+
+  private List<String> analyze(
+      List<String> arguments, Collection<File> sources, @Nullable List<File> profiles) {
+    WorkQueue workQueue =
+        getWorkerExecutor()
+            .processIsolation(
+                spec -> {
+                  if (getJavaCompiler().isPresent()) {
+                    spec.getForkOptions().setExecutable(javaExecutable(getJavaCompiler().get()));
+                  }
+                  if (isJava9Compatible()) {
+                    spec.getForkOptions().jvmArgs(JVM_ARGS_STRONG_ENCAPSULATION);
+                  }
+                });
+    Map<String, List<File>> sourcesByPackage = new TreeMap<>();
+    for (File source : sources) {
+      sourcesByPackage
+          .computeIfAbsent(source.getParent(), ignored -> new ArrayList<>())
+          .add(source);
+    }
+    List<File> shardReports = new ArrayList<>();
+    for (List<File> shard : partition(sourcesByPackage, getShards().get())) {
+      File shardDir = new File(getTemporaryDir(), "shard-" + shardReports.size());
+      File shardReport = new File(shardDir, "report.txt");
+      File shardProfile = new File(shardDir, "profile.txt");
+      shardDir.mkdirs();
+      shardReports.add(shardReport);
+      if (profiles != null) {
+        profiles.add(shardProfile);
+      }
+      workQueue.submit(
+          NullAwayCheckAction.class,
+          parameters -> {
+            parameters.getSource().from(shard);
+            parameters.getClasspath().from(getClasspath());
+            parameters.getProcessorPath().from(getErrorproneClasspath());
+            parameters.getArguments().set(arguments);
+            parameters.getProjectDirectory().set(getLayout().getProjectDirectory());
+            parameters.getTemporaryDirectory().set(shardDir);
+            parameters.getReportFile().set(shardReport);
+            if (profiles != null) {
+              parameters.getProfileFile().set(shardProfile);
+            }
+          });
+    }
+    workQueue.await();
+
+    List<String> findings = new ArrayList<>();
+    try {
+      for (File shardReport : shardReports) {
+        findings.addAll(Files.readAllLines(shardReport.toPath(), StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return findings;
+  }
+
+  /**
+   * Returns everything that can change the findings, beside the sources and classpath: the
+   * arguments, Error Prone and NullAway, and the JDK.
+   */
+  private String cacheConfiguration(List<String> arguments) {
+    StringBuilder configuration = new StringBuilder();
+    for (String argument : arguments) {
+      configuration.append(argument).append('\n');
+    }
+    try {
+      for (File file : getErrorproneClasspath()) {
+        configuration.append(NullAwayResultCache.hashClasspathEntry(file)).append('\n');
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (getJavaCompiler().isPresent()) {
+      JavaInstallationMetadata metadata = getJavaCompiler().get().getMetadata();
+      configuration.append(metadata.getInstallationPath().getAsFile()).append('\n');
+      configuration.append(metadata.getJavaRuntimeVersion()).append('\n');
+    } else {
+      configuration.append(System.getProperty("java.home")).append('\n');
+      configuration.append(System.getProperty("java.runtime.version")).append('\n');
+    }
+    return configuration.toString();
+  }
+
+  /**
+   * Splits the packages' sources into at most {@code shards} lists of similar sizes, never
+   * splitting a package.
+   */
+  static List<List<File>> partition(Map<String, List<File>> sourcesByPackage, int shards) {
+    List<List<File>> packages = new ArrayList<>(sourcesByPackage.values());
+    // Largest packages first, each going to the smallest shard so far
+    packages.sort((a, b) -> Integer.compare(b.size(), a.size()));
+    List<List<File>> result = new ArrayList<>();
+    for (int i = Math.max(1, Math.min(shards, packages.size())); i > 0; i--) {
+      result.add(new ArrayList<>());
+    }
+    for (List<File> sources : packages) {
+      List<File> smallest = result.get(0);
+      for (List<File> shard : result) {
+        if (shard.size() < smallest.size()) {
+          smallest = shard;
+        }
+      }
+      smallest.addAll(sources);
+    }
+    return result;
+  }
+
+  private void reportFindings(Set<String> findings, File reportFile) {
+    // javac isn't passed -Werror, and cached findings aren't reported by javac anyway
+    boolean warningsAreErrors = getCompilerArgs().get().contains("-Werror");
+    int errors = 0;
+    for (String finding : findings) {
+      if (warningsAreErrors || NullAwayCheckAction.isError(finding)) {
+        errors++;
+        getLogger().error(finding);
+      } else {
+        getLogger().warn(finding);
+      }
+    }
+    if (errors > 0 && !getIgnoreFailures().get()) {
+      throw new GradleException(
+          "NullAway found " + errors + " error(s); see the report at " + reportFile);
+    }
+  }
+
+  private boolean isJava9Compatible() {
+    return getJavaCompiler().isPresent()
+        ? getJavaCompiler().get().getMetadata().getLanguageVersion().canCompileOrRun(9)
+        : JavaVersion.current().isJava9Compatible();
+  }
+
+  private static File javaExecutable(JavaCompiler javaCompiler) {
+    File javac = javaCompiler.getExecutablePath().getAsFile();
+    return new File(javac.getParentFile(), javac.getName().replace("javac", "java"));
+  }
+}
@@ -0,0 +1,222 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Runs {@code javac} with Error Prone on the given sources, stopping right after the analysis, and
+ * writes the resulting errors and Error Prone warnings (but not {@code javac} lint warnings) to a
+ * report file as they're reported, rather than holding them all in memory; the {@link
+ * NullAwayCheck} task then reads them back to merge them with other shards and sort them by file
+ * and position.
+ *
+ * <p>Each finding is written on a single line, as {@code path:line:column: kind: message}, or
+ * {@code kind: message} for diagnostics not related to a source file.
+ */
+public abstract class NullAwayCheckAction implements WorkAction<NullAwayCheckAction.Parameters> {
+  public interface Parameters extends WorkParameters {
+    ConfigurableFileCollection getSource();
+
+    ConfigurableFileCollection getClasspath();
+
+    ConfigurableFileCollection getProcessorPath();
+
+    ListProperty<String> getArguments();
+
+    DirectoryProperty getProjectDirectory();
+
+    DirectoryProperty getTemporaryDirectory();
+
+    RegularFileProperty getReportFile();
+
+    /** Where to write the {@link NullAwayProfiler} measurements; not profiling if absent. */
+    RegularFileProperty getProfileFile();
+  }
+
+  private static final String ERROR = "error";
+  private static final String WARNING = "warning";
+
+  // Error Prone prefixes its messages with the check name, javac lint warnings with lowercase keys
+  private static final Pattern ERROR_PRONE_MESSAGE = Pattern.compile("^\\[[A-Z]\\w*\\] ");
+
+  static final Pattern LOCATION =
+      Pattern.compile("^(.+):(\\d+):(\\d+): (?:" + ERROR + "|" + WARNING + "): ");
+
+  /** Orders findings by file, line, and column, then by message. */
+  static final Comparator<String> FINDING_ORDER =
+      (a, b) -> {
+        Matcher ma = LOCATION.matcher(a);
+        Matcher mb = LOCATION.matcher(b);
+        boolean hasLocationA = ma.find();
+        boolean hasLocationB = mb.find();
+        int c = Boolean.compare(hasLocationA, hasLocationB);
+        if (c == 0 && hasLocationA) {
+          c = ma.group(1).compareTo(mb.group(1));
+          if (c == 0) {
+            c = Long.compare(Long.parseLong(ma.group(2)), Long.parseLong(mb.group(2)));
+          }
+          if (c == 0) {
+            c = Long.compare(Long.parseLong(ma.group(3)), Long.parseLong(mb.group(3)));
+          }
+        }
+        return c != 0 ? c : a.compareTo(b);
+      };
+
+  static boolean isError(String finding) {
+    return finding.startsWith(ERROR + ": ") || finding.contains(": " + ERROR + ": ");
+  }
+
+  /** Returns the path of the source file the finding is about, if any. */
+  static @Nullable String findingPath(String finding) {
+    Matcher matcher = LOCATION.matcher(finding);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
+  /**
+   * Returns the path of a source file as written in the report: relative to the project directory
+   * when inside it, which keeps the report independent of the project location, for the build
+   * cache.
+   */
+  static String reportPath(Path projectDir, File file) {
+    Path path = file.toPath();
+    if (path.startsWith(projectDir)) {
+      path = projectDir.relativize(path);
+    }
+    return path.toString().replace(File.separatorChar, '/');
+  }
+
+  @Override
+  public void execute() {
+    Parameters parameters = getParameters();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> options = new ArrayList<>();
+    options.add("-classpath");
+    options.add(parameters.getClasspath().getAsPath());
+    options.add("-processorpath");
+    options.add(parameters.getProcessorPath().getAsPath());
+    options.add("-proc:none");
+    options.add("-implicit:none");
+    options.add("-d");
+    options.add(parameters.getTemporaryDirectory().get().getAsFile().getPath());
+    options.add("-XDcompilePolicy=simple");
+    options.add("--should-stop=ifError=FLOW");
+    // Error Prone analyzes the sources right after FLOW, class files aren't needed
+    options.add("--should-stop=ifNoError=FLOW");
+    // Only Error Prone's warnings are findings
+    options.add("-Xlint:none");
+    options.addAll(parameters.getArguments().get());
+    Path projectDir = parameters.getProjectDirectory().get().getAsFile().toPath();
+    try (BufferedWriter report =
+        Files.newBufferedWriter(
+            parameters.getReportFile().get().getAsFile().toPath(), StandardCharsets.UTF_8)) {
+      DiagnosticListener<JavaFileObject> diagnostics =
+          diagnostic -> {
+            @Nullable String finding = finding(diagnostic, projectDir);
+            if (finding != null) {
+              try {
+                report.write(finding);
+                report.write('\n');
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            }
+          };
+      try (StandardJavaFileManager fileManager =
+          compiler.getStandardFileManager(diagnostics, null, null)) {
+        JavaCompiler.CompilationTask task =
+            compiler.getTask(
+                null,
+                fileManager,
+                diagnostics,
+                options,
+                null,
+                fileManager.getJavaFileObjectsFromFiles(parameters.getSource().getFiles()));
+        @Nullable NullAwayProfiler profiler = null;
+        if (parameters.getProfileFile().isPresent()) {
+          try {
+            profiler = NullAwayProfiler.attach(task, projectDir);
+          } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not profile the analysis", e);
+          }
+        }
+        long start = System.nanoTime();
+        task.call();
+        if (profiler != null) {
+          profiler.write(
+              parameters.getProfileFile().get().getAsFile(), System.nanoTime() - start);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the finding for the given diagnostic, or {@code null} if it's not reported. */
+  private static @Nullable String finding(
+      Diagnostic<? extends JavaFileObject> diagnostic, Path projectDir) {
+    String kind = kind(diagnostic.getKind());
+    if (kind == null) {
+      return null;
+    }
+    String message = diagnostic.getMessage(Locale.ROOT).trim().replaceAll("\\s*\\R\\s*", " ");
+    // Errors are always reported, as they mean the sources couldn't be fully analyzed
+    if (kind.equals(WARNING) && !ERROR_PRONE_MESSAGE.matcher(message).find()) {
+      return null;
+    }
+    String path = path(diagnostic, projectDir);
+    return path.isEmpty()
+        ? kind + ": " + message
+        : path
+            + ":"
+            + diagnostic.getLineNumber()
+            + ":"
+            + diagnostic.getColumnNumber()
+            + ": "
+            + kind
+            + ": "
+            + message;
+  }
+
+  private static String path(Diagnostic<? extends JavaFileObject> diagnostic, Path projectDir) {
+    if (diagnostic.getSource() == null) {
+      return "";
+    }
+    return reportPath(projectDir, new File(diagnostic.getSource().toUri()));
+  }
+
+  private static @Nullable String kind(Diagnostic.Kind kind) {
+    switch (kind) {
+      case ERROR:
+        return ERROR;
+      case WARNING:
+      case MANDATORY_WARNING:
+        return WARNING;
+      default:
+        return null;
+    }
+  }
+}
@@ -1,9 +1,24 @@
 package net.ltgt.gradle.nullaway;
 
+import javax.inject.Inject;
+import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
 
 public abstract class NullAwayExtension {
+  private final NamedDomainObjectContainer<NullAwaySourceSetOptions> sourceSets;
+
+  @Inject
+  @SuppressWarnings("this-escape")
+  public NullAwayExtension(ObjectFactory objects) {
+    sourceSets =
+        objects.domainObjectContainer(
+            NullAwaySourceSetOptions.class,
+            name -> objects.newInstance(NullAwaySourceSetOptions.class, name, this));
+  }
+
   /**
    * Indicates that the {@link #getAnnotatedPackages()} flag has been deliberately omitted, and that
    * NullAway can proceed with only treating {@code @NullMarked} code as annotated, in accordance
@@ -19,4 +34,176 @@ public abstract class NullAwayExtension {
 
   /** If set to true, enables new checks based on JSpecify (like checks for generic types) */
   public abstract Property<Boolean> getJspecifyMode();
+
+  /**
+   * A preset used as conventions for some options; values configured explicitly (including {@link
+   * #getJspecifyMode() jspecifyMode} at the project level) take precedence.
+   *
+   * @see NullAwayPreset
+   */
+  public abstract Property<NullAwayPreset> getPreset();
+
+  /**
+   * If set to true, all list options are sorted and de-duplicated before being fingerprinted and
+   * passed to NullAway.
+   *
+   * @see NullAwayOptions#getCanonicalizeLists()
+   */
+  public abstract Property<Boolean> getCanonicalizeLists();
+
+  /**
+   * If set to true, {@code JavaCompile} tasks don't configure their own NullAway options until they
+   * need to: tasks that don't override any option all share the same project-level options.
+   *
+   * <p>Task-level options will then only reflect the project-level values when read at execution
+   * time, not while configuring the task.
+   *
+   * <p>This must be configured before {@code JavaCompile} tasks are realized.
+   */
+  public abstract Property<Boolean> getShareTaskOptions();
+
+  /**
+   * If set to true, the {@code package-info.java} and {@code module-info.java} files of each source
+   * set are indexed for JSpecify's {@code @NullMarked} and {@code @NullUnmarked} annotations, and
+   * the index is used to complement the NullAway options of the source set's {@code JavaCompile}
+   * task; defaults to false.
+   *
+   * <p>The indexing tasks are only registered when this is enabled, so this must be configured
+   * before the project has been evaluated.
+   *
+   * @see NullAwayOptions#getNullMarkedIndexFile()
+   */
+  public abstract Property<Boolean> getIndexNullMarkedPackages();
+
+  /**
+   * If set to true, the JARs of the compile classpath of each source set are indexed (through an
+   * artifact transform, so each JAR is scanned only once) for packages annotated with JSpecify's
+   * {@code @NullMarked} or {@code @NullUnmarked}, or part of a {@code @NullMarked} module, and the
+   * indexes are used to complement the NullAway options of the source set's {@code JavaCompile}
+   * task; defaults to false.
+   *
+   * <p>This must be configured before {@code JavaCompile} tasks are realized.
+   *
+   * @see NullAwayOptions#getLibraryNullMarkedIndexFiles()
+   */
+  public abstract Property<Boolean> getIndexLibraryNullMarkedPackages();
+
+  /**
+   * If set to true, the nullness summaries of the other projects of the build that the compile
+   * classpath of each source set depends on are used to complement the NullAway options of the
+   * source set's {@code JavaCompile} task; defaults to false.
+   *
+   * <p>Each project publishes the summary of its source sets (generated by a {@link
+   * GenerateNullnessSummary} task, from the NullAway options of the source set's {@code
+   * JavaCompile} task) as a variant of their {@code apiElements} configuration (e.g. {@code
+   * apiElements} for the {@code main} source set), so that annotated packages and known
+   * initializers only need to be configured in the project they belong to.
+   *
+   * <p>This must be configured before {@code JavaCompile} tasks are realized.
+   *
+   * @see NullAwayOptions#getDependencyNullnessSummaryFiles()
+   */
+  public abstract Property<Boolean> getShareNullnessSummaries();
+
+  /**
+   * If set to true, generated sources (from annotation processors, and source directories inside
+   * the build directory) are excluded from Error Prone's analysis, including NullAway's, through
+   * the {@code excludedPaths} Error Prone option, unless that option is configured explicitly.
+   */
+  public abstract Property<Boolean> getExcludeGeneratedSources();
+
+  /**
+   * If set to true, NullAway's JarInfer is run on each JAR of the compile classpath of each source
+   * set (through an artifact transform, so each JAR is processed only once), and the inferred
+   * models are added to the annotation processor path and used by NullAway; defaults to false.
+   *
+   * <p>JarInfer must be added to the {@code nullawayJarInfer} configuration.
+   *
+   * @see NullAwayOptions#getJarInferEnabled()
+   */
+  public abstract Property<Boolean> getInferLibraryModels();
+
+  /**
+   * A git revision (e.g. {@code origin/main}) to restrict the analysis to the packages changed
+   * since then, according to the local git repository.
+   *
+   * <p>Each source set then gets a {@link ListChangedPackages} task, whose output is used to
+   * exclude the source files of the other packages from what NullAway reports, when it runs in
+   * the source set's {@link NullAwayCheck} task or as the only Error Prone check of its {@code
+   * JavaCompile} task. This must be configured before the build script is done evaluating.
+   *
+   * @see NullAwayOptions#getChangedPackagesFile()
+   * @see #getIncludeDependentPackages()
+   */
+  public abstract Property<String> getChangedSince();
+
+  /**
+   * If set to true, packages that import anything from the packages changed since {@link
+   * #getChangedSince()} are analyzed too.
+   */
+  public abstract Property<Boolean> getIncludeDependentPackages();
+
+  /**
+   * If set to true, NullAway is turned off in {@code JavaCompile} tasks and runs in a separate
+   * {@link NullAwayCheck} task per source set instead, wired to the {@code check} task.
+   *
+   * <p>Downstream tasks then no longer wait for NullAway to compile against a source set's classes,
+   * and changing NullAway options no longer recompiles anything.
+   */
+  public abstract Property<Boolean> getSeparateCheckTask();
+
+  /**
+   * If set to true, continuous builds ({@code --continuous}) run NullAway as in {@link
+   * #getSeparateCheckTask() separateCheckTask} mode, with each {@link NullAwayCheck} task following
+   * its source set's {@code JavaCompile} task rather than blocking it, only analyzing again the
+   * source files whose findings might have changed, and reporting findings without failing.
+   */
+  public abstract Property<Boolean> getDeferInContinuousBuild();
+
+  /**
+   * If set to true, NullAway is turned off in {@code JavaCompile} tasks unless one of the {@link
+   * #getCheckingTasks() checkingTasks} is requested on the command line, e.g. when running {@code
+   * ./gradlew run} or {@code ./gradlew installDist}, or when an IDE syncs the project.
+   *
+   * <p>The NullAway arguments differ between both modes, so their compile tasks have distinct cache
+   * keys.
+   */
+  public abstract Property<Boolean> getOnlyWhenChecking();
+
+  /**
+   * The names of the tasks that turn NullAway on when {@link #getOnlyWhenChecking()
+   * onlyWhenChecking} is enabled; defaults to {@code check} and {@code build}.
+   *
+   * <p>Requested tasks are matched by name, whatever their project path.
+   */
+  public abstract SetProperty<String> getCheckingTasks();
+
+  /**
+   * If set to true, the compile time ({@code javac} included), number of source files, and preset
+   * of the project's {@code JavaCompile} tasks that run NullAway are reported to a build service
+   * shared by all projects; defaults to false.
+   *
+   * <p>At the end of the build, a summary of those tasks is logged, and a line with the build
+   * result and totals is appended to {@code .gradle/nullaway/overhead-history.csv} in the root
+   * project, or in the project cache directory if overridden. Requires Gradle 8.1 or later to
+   * record the build result.
+   *
+   * <p>This must be configured before {@code JavaCompile} tasks are realized.
+   */
+  public abstract Property<Boolean> getReportBuildOverhead();
+
+  /**
+   * NullAway options for each source set, used as conventions for their {@code JavaCompile} task.
+   *
+   * <p>Those options default to the project-level values. Options for test source sets ({@code
+   * test}, {@code testFixtures}, and any source set whose name ends with {@code Test}) are
+   * automatically created, with lighter defaults that replace the project-level values: {@link
+   * NullAwayOptions#getHandleTestAssertionLibraries() handleTestAssertionLibraries} without the
+   * {@link NullAwayOptions#getJspecifyMode() JSpecify mode}.
+   *
+   * <p>Options for a source set must be configured before its {@code JavaCompile} task is realized.
+   */
+  public NamedDomainObjectContainer<NullAwaySourceSetOptions> getSourceSets() {
+    return sourceSets;
+  }
 }
@@ -1,28 +1,65 @@
 package net.ltgt.gradle.nullaway;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
 import net.ltgt.gradle.errorprone.CheckSeverity;
 import net.ltgt.gradle.errorprone.ErrorProneOptions;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.work.NormalizeLineEndings;
+import org.jspecify.annotations.Nullable;
 
 public abstract class NullAwayOptions {
+  private static final Logger LOGGER = Logging.getLogger(NullAwayOptions.class);
+
+  private transient @Nullable List<String> arguments;
+  private transient @Nullable List<String> changedPackages;
+  private @Nullable NullAwayPreset preset;
+  // Where the preset comes from when not configured on those options, whichever was wired last
+  private transient @Nullable NullAwayExtension presetExtension;
+  private transient @Nullable NullAwayOptions presetDefaults;
+  // The inherited values of the options presets configure, which take precedence over the preset
+  private transient @Nullable Map<Property<Boolean>, Provider<Boolean>> inheritedPresetOptions;
+  private boolean listOptionsCanonicalized;
+
   @Inject
   @SuppressWarnings("this-escape")
   public NullAwayOptions(NullAwayExtension nullawayExtension) {
     getSeverity().convention(CheckSeverity.DEFAULT);
-    getOnlyNullMarked().convention(nullawayExtension.getOnlyNullMarked());
-    getAnnotatedPackages().convention(nullawayExtension.getAnnotatedPackages());
-    getJspecifyMode().convention(nullawayExtension.getJspecifyMode());
+    conventionsFrom(nullawayExtension);
   }
 
+  /** For subclasses that wire their conventions by other means. */
+  NullAwayOptions() {}
+
   /**
    * The severity of the NullAway check.
    *
@@ -41,6 +78,17 @@ public abstract class NullAwayOptions {
   @Input
   public abstract Property<CheckSeverity> getSeverity();
 
+  /**
+   * If set to true, all other Error Prone checks are disabled, so that only NullAway runs; maps to
+   * {@code -XepDisableAllChecks}.
+   *
+   * <p>Checks explicitly enabled through {@link ErrorProneOptions#getChecks()} still run. This has
+   * no effect if NullAway is {@link #disable() disabled}.
+   */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getOnlyNullAway();
+
   /**
    * Indicates that the {@link #getAnnotatedPackages() annotatedPackages} flag has been deliberately
    * omitted, and that NullAway can proceed with only treating {@code @NullMarked} code as
@@ -81,6 +129,74 @@ public abstract class NullAwayOptions {
   @Optional
   public abstract ListProperty<String> getUnannotatedSubPackages();
 
+  /**
+   * An index of the {@code @NullMarked} and {@code @NullUnmarked} packages and modules of the
+   * compiled sources, as generated by the {@link IndexNullMarkedPackages} task.
+   *
+   * <p>{@code @NullMarked} packages are added to the {@link #getAnnotatedPackages()
+   * annotatedPackages} and {@code @NullUnmarked} packages to the {@link
+   * #getUnannotatedSubPackages() unannotatedSubPackages}, as entries that don't match their
+   * subpackages, as those aren't covered by the annotations. If the module is {@code @NullMarked}
+   * and neither {@link #getOnlyNullMarked() onlyNullMarked} nor {@link #getAnnotatedPackages()
+   * annotatedPackages} are configured, {@code onlyNullMarked} is set instead.
+   *
+   * <p>This is set by the plugin when {@link NullAwayExtension#getIndexNullMarkedPackages()} is
+   * enabled.
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getNullMarkedIndexFile();
+
+  /**
+   * Indexes of the {@code @NullMarked} and {@code @NullUnmarked} packages of libraries, used to
+   * complement {@link #getAnnotatedPackages() annotatedPackages} and {@link
+   * #getUnannotatedSubPackages() unannotatedSubPackages}, as entries that don't match their
+   * subpackages, unless only {@code @NullMarked} code is treated as annotated.
+   *
+   * <p>This is set by the plugin when {@link
+   * NullAwayExtension#getIndexLibraryNullMarkedPackages()} is enabled.
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract ConfigurableFileCollection getLibraryNullMarkedIndexFiles();
+
+  /**
+   * Nullness summaries of the projects this source set depends on, as generated by their {@link
+   * GenerateNullnessSummary} task: their annotated and unannotated packages complement {@link
+   * #getAnnotatedPackages() annotatedPackages} and {@link #getUnannotatedSubPackages()
+   * unannotatedSubPackages} (unless only {@code @NullMarked} code is treated as annotated), as
+   * entries that don't match their subpackages, and their known initializers complement {@link
+   * #getKnownInitializers() knownInitializers}.
+   *
+   * <p>This is set by the plugin when {@link NullAwayExtension#getShareNullnessSummaries()} is
+   * enabled.
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract ConfigurableFileCollection getDependencyNullnessSummaryFiles();
+
+  /**
+   * A file listing packages, one per line, to restrict the analysis to, as generated by the {@link
+   * ListChangedPackages} task.
+   *
+   * <p>The source files of other packages are still compiled with the same {@link
+   * #getAnnotatedPackages() annotatedPackages}, so NullAway sees the same nullness of their APIs.
+   * When NullAway is the only Error Prone check that runs (in a {@link NullAwayCheck} task, or with
+   * {@link #getOnlyNullAway() onlyNullAway} and no other check enabled), they're added to Error
+   * Prone's {@code excludedPaths} so nothing is reported about them; otherwise, NullAway reports on
+   * all packages, as excluding them would turn off the other checks too.
+   *
+   * <p>NullAway is disabled if no package changed, or none of them is in the {@code
+   * annotatedPackages} (unless {@code @NullMarked} code is treated as annotated).
+   *
+   * <p>This is set by the plugin when {@link NullAwayExtension#getChangedSince()} is configured.
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getChangedPackagesFile();
+
   /**
    * A list of classes within annotated packages that should be treated as unannotated; maps to
    * {@code -XepOpt:NullAway:UnannotatedClasses}.
@@ -89,6 +205,20 @@ public abstract class NullAwayOptions {
   @Optional
   public abstract ListProperty<String> getUnannotatedClasses();
 
+  /**
+   * A file listing classes within annotated packages that should be treated as unannotated, one per
+   * line, in addition to the {@link #getUnannotatedClasses() unannotatedClasses} list.
+   *
+   * <p>Blank lines and lines starting with {@code #} are ignored. The file is only read at
+   * execution time, and tracked by its content, so large generated lists don't weigh on the
+   * configuration cache or task input snapshots.
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  @NormalizeLineEndings
+  public abstract RegularFileProperty getUnannotatedClassesFile();
+
   /**
    * The fully qualified name of those methods from third-party libraries that NullAway should treat
    * as initializers; maps to {@code -XepOpt:NullAway:KnownInitializers}.
@@ -97,6 +227,18 @@ public abstract class NullAwayOptions {
   @Optional
   public abstract ListProperty<String> getKnownInitializers();
 
+  /**
+   * A file listing the fully qualified name of methods that NullAway should treat as initializers,
+   * one per line, in addition to the {@link #getKnownInitializers() knownInitializers} list.
+   *
+   * @see #getUnannotatedClassesFile()
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  @NormalizeLineEndings
+  public abstract RegularFileProperty getKnownInitializersFile();
+
   /**
    * A list of annotations that cause classes to be excluded from nullability analysis; maps tp
    * {@code -XepOpt:NullAway:ExcludedClassAnnotations}.
@@ -113,6 +255,18 @@ public abstract class NullAwayOptions {
   @Optional
   public abstract ListProperty<String> getExcludedClasses();
 
+  /**
+   * A file listing classes to be excluded from the nullability analysis, one per line, in addition
+   * to the {@link #getExcludedClasses() excludedClasses} list.
+   *
+   * @see #getUnannotatedClassesFile()
+   */
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  @NormalizeLineEndings
+  public abstract RegularFileProperty getExcludedClassesFile();
+
   /**
    * A list of annotations that cause fields to be excluded from being checked for proper
    * initialization; maps to {@code -XepOpt:NullAway:ExcludedFieldAnnotations}.
@@ -337,6 +491,31 @@ public abstract class NullAwayOptions {
   @Optional
   public abstract Property<Boolean> getWarnOnGenericInferenceFailure();
 
+  /**
+   * If set to true, NullAway will use the library models inferred by JarInfer that are found on the
+   * annotation processor path; maps to {@code -XepOpt:NullAway:JarInferEnabled}.
+   *
+   * <p>Defaults to the project-level {@link NullAwayExtension#getInferLibraryModels()
+   * inferLibraryModels}.
+   */
+  @Input
+  @Optional
+  public abstract Property<Boolean> getJarInferEnabled();
+
+  /**
+   * If set to true, all list options are sorted and de-duplicated before being fingerprinted and
+   * passed to NullAway, so that configurations only differing in the order of their values (or by
+   * duplicate values) share the same build cache entries.
+   *
+   * <p>List options are then finalized when first read: they can no longer be changed once Gradle
+   * has started computing the task inputs.
+   *
+   * <p>Defaults to the {@link NullAwayExtension#getCanonicalizeLists() value configured at the
+   * project-level}.
+   */
+  @Internal
+  public abstract Property<Boolean> getCanonicalizeLists();
+
   /**
    * Enable NullAway.
    *
@@ -373,16 +552,358 @@ public abstract class NullAwayOptions {
     getSeverity().set(CheckSeverity.ERROR);
   }
 
-  Iterable<String> asArguments() {
+  /**
+   * Uses the given preset as conventions for those options.
+   *
+   * <p>The preset only configures the options that don't inherit a value: options configured
+   * explicitly on those options, or inherited from the source set, the project-level, or the
+   * build-wide defaults (directly or through their preset), take precedence over the preset.
+   */
+  public void preset(NullAwayPreset preset) {
+    this.preset = preset;
+    applyPreset(preset);
+  }
+
+  private void applyPreset(NullAwayPreset preset) {
+    presetConvention(getJspecifyMode(), preset.isJspecifyMode());
+    presetConvention(getCheckOptionalEmptiness(), preset.isCheckOptionalEmptiness());
+    presetConvention(getCheckContracts(), preset.isCheckContracts());
+    presetConvention(getHandleTestAssertionLibraries(), preset.isHandleTestAssertionLibraries());
+    presetConvention(getExhaustiveOverride(), preset.isExhaustiveOverride());
+  }
+
+  private void presetConvention(Property<Boolean> option, boolean presetValue) {
+    @Nullable Provider<Boolean> inherited = inheritedPresetOptions().get(option);
+    if (inherited != null) {
+      option.convention(inherited.orElse(presetValue));
+    } else {
+      option.convention(presetValue);
+    }
+  }
+
+  private Map<Property<Boolean>, Provider<Boolean>> inheritedPresetOptions() {
+    if (inheritedPresetOptions == null) {
+      inheritedPresetOptions = new IdentityHashMap<>();
+    }
+    return inheritedPresetOptions;
+  }
+
+  /** Uses the inherited value of an option that presets configure as its convention. */
+  private void inheritPresetOption(Property<Boolean> option, Provider<Boolean> inherited) {
+    inheritedPresetOptions().put(option, inherited);
+    option.convention(inherited);
+  }
+
+  /**
+   * Uses the given value as convention for an option that presets configure, rather than the
+   * inherited value; the preset of those options, if any, takes precedence.
+   */
+  void presetOptionConvention(Property<Boolean> option, boolean value) {
+    inheritedPresetOptions().remove(option);
+    option.convention(value);
+    if (preset != null) {
+      applyPreset(preset);
+    }
+  }
+
+  /**
+   * Returns the preset these options use as conventions: the one they inherit, which takes
+   * precedence, or else their own, if any.
+   */
+  final @Nullable NullAwayPreset effectivePreset() {
+    @Nullable NullAwayPreset inherited = inheritedPreset();
+    return inherited != null ? inherited : preset;
+  }
+
+  /** Returns the preset of the extension or options these options take their conventions from. */
+  @Nullable NullAwayPreset inheritedPreset() {
+    if (presetExtension != null) {
+      @Nullable NullAwayPreset preset = presetExtension.getPreset().getOrNull();
+      if (preset != null) {
+        return preset;
+      }
+    }
+    return presetDefaults != null ? presetDefaults.effectivePreset() : null;
+  }
+
+  /** Uses the values of the given project-level extension as conventions for those options. */
+  void conventionsFrom(NullAwayExtension nullawayExtension) {
+    presetExtension = nullawayExtension;
+    presetDefaults = null;
+    Provider<NullAwayPreset> preset = nullawayExtension.getPreset();
+    getOnlyNullMarked().convention(nullawayExtension.getOnlyNullMarked());
+    getAnnotatedPackages().convention(nullawayExtension.getAnnotatedPackages());
+    inheritPresetOption(
+        getJspecifyMode(),
+        nullawayExtension.getJspecifyMode().orElse(preset.map(NullAwayPreset::isJspecifyMode)));
+    inheritPresetOption(
+        getCheckOptionalEmptiness(), preset.map(NullAwayPreset::isCheckOptionalEmptiness));
+    inheritPresetOption(getCheckContracts(), preset.map(NullAwayPreset::isCheckContracts));
+    inheritPresetOption(
+        getHandleTestAssertionLibraries(),
+        preset.map(NullAwayPreset::isHandleTestAssertionLibraries));
+    inheritPresetOption(getExhaustiveOverride(), preset.map(NullAwayPreset::isExhaustiveOverride));
+    getCanonicalizeLists().convention(nullawayExtension.getCanonicalizeLists());
+    getJarInferEnabled().convention(nullawayExtension.getInferLibraryModels());
+    if (this.preset != null) {
+      applyPreset(this.preset);
+    }
+  }
+
+  /**
+   * Uses the values of the given project-level extension as conventions for those options, falling
+   * back to the given build-wide defaults, used as conventions for all the other properties.
+   *
+   * <p>The options that the extension only sets through its preset keep the build-wide values
+   * (including those of the build-wide preset) when the project has no preset.
+   */
+  void conventionsFrom(NullAwayExtension nullawayExtension, NullAwayOptions buildDefaults) {
+    conventionsFrom(buildDefaults);
+    conventionsFrom(nullawayExtension);
+    presetDefaults = buildDefaults;
+    Provider<NullAwayPreset> preset = nullawayExtension.getPreset();
+    inheritPresetOption(
+        getJspecifyMode(),
+        nullawayExtension
+            .getJspecifyMode()
+            .orElse(preset.map(NullAwayPreset::isJspecifyMode))
+            .orElse(buildDefaults.getJspecifyMode()));
+    inheritPresetOption(
+        getCheckOptionalEmptiness(),
+        preset
+            .map(NullAwayPreset::isCheckOptionalEmptiness)
+            .orElse(buildDefaults.getCheckOptionalEmptiness()));
+    inheritPresetOption(
+        getCheckContracts(),
+        preset.map(NullAwayPreset::isCheckContracts).orElse(buildDefaults.getCheckContracts()));
+    inheritPresetOption(
+        getHandleTestAssertionLibraries(),
+        preset
+            .map(NullAwayPreset::isHandleTestAssertionLibraries)
+            .orElse(buildDefaults.getHandleTestAssertionLibraries()));
+    inheritPresetOption(
+        getExhaustiveOverride(),
+        preset
+            .map(NullAwayPreset::isExhaustiveOverride)
+            .orElse(buildDefaults.getExhaustiveOverride()));
+    if (this.preset != null) {
+      applyPreset(this.preset);
+    }
+  }
+
+  /**
+   * Uses the values of the given options as conventions for all the properties of those options.
+   */
+  void conventionsFrom(NullAwayOptions defaults) {
+    presetExtension = null;
+    presetDefaults = defaults;
+    getSeverity().convention(defaults.getSeverity());
+    getOnlyNullAway().convention(defaults.getOnlyNullAway());
+    getOnlyNullMarked().convention(defaults.getOnlyNullMarked());
+    getAnnotatedPackages().convention(defaults.getAnnotatedPackages());
+    getUnannotatedSubPackages().convention(defaults.getUnannotatedSubPackages());
+    getNullMarkedIndexFile().convention(defaults.getNullMarkedIndexFile());
+    // File collections have no convention: the indexes are only ever set on task-level options
+    getLibraryNullMarkedIndexFiles().from(defaults.getLibraryNullMarkedIndexFiles());
+    getDependencyNullnessSummaryFiles().from(defaults.getDependencyNullnessSummaryFiles());
+    getChangedPackagesFile().convention(defaults.getChangedPackagesFile());
+    getUnannotatedClasses().convention(defaults.getUnannotatedClasses());
+    getUnannotatedClassesFile().convention(defaults.getUnannotatedClassesFile());
+    getKnownInitializers().convention(defaults.getKnownInitializers());
+    getKnownInitializersFile().convention(defaults.getKnownInitializersFile());
+    getExcludedClassAnnotations().convention(defaults.getExcludedClassAnnotations());
+    getExcludedClasses().convention(defaults.getExcludedClasses());
+    getExcludedClassesFile().convention(defaults.getExcludedClassesFile());
+    getExcludedFieldAnnotations().convention(defaults.getExcludedFieldAnnotations());
+    getCustomInitializerAnnotations().convention(defaults.getCustomInitializerAnnotations());
+    getExternalInitAnnotations().convention(defaults.getExternalInitAnnotations());
+    getTreatGeneratedAsUnannotated().convention(defaults.getTreatGeneratedAsUnannotated());
+    getAcknowledgeRestrictiveAnnotations()
+        .convention(defaults.getAcknowledgeRestrictiveAnnotations());
+    inheritPresetOption(getCheckOptionalEmptiness(), defaults.getCheckOptionalEmptiness());
+    getSuggestSuppressions().convention(defaults.getSuggestSuppressions());
+    getAssertsEnabled().convention(defaults.getAssertsEnabled());
+    inheritPresetOption(getExhaustiveOverride(), defaults.getExhaustiveOverride());
+    getCastToNonNullMethod().convention(defaults.getCastToNonNullMethod());
+    getCheckOptionalEmptinessCustomClasses()
+        .convention(defaults.getCheckOptionalEmptinessCustomClasses());
+    getAutoFixSuppressionComment().convention(defaults.getAutoFixSuppressionComment());
+    inheritPresetOption(
+        getHandleTestAssertionLibraries(), defaults.getHandleTestAssertionLibraries());
+    getAcknowledgeAndroidRecent().convention(defaults.getAcknowledgeAndroidRecent());
+    inheritPresetOption(getCheckContracts(), defaults.getCheckContracts());
+    getCustomContractAnnotations().convention(defaults.getCustomContractAnnotations());
+    getCustomNullableAnnotations().convention(defaults.getCustomNullableAnnotations());
+    getCustomNonnullAnnotations().convention(defaults.getCustomNonnullAnnotations());
+    getCustomGeneratedCodeAnnotations().convention(defaults.getCustomGeneratedCodeAnnotations());
+    inheritPresetOption(getJspecifyMode(), defaults.getJspecifyMode());
+    getExtraFuturesClasses().convention(defaults.getExtraFuturesClasses());
+    getSuppressionNameAliases().convention(defaults.getSuppressionNameAliases());
+    getWarnOnGenericInferenceFailure().convention(defaults.getWarnOnGenericInferenceFailure());
+    getJarInferEnabled().convention(defaults.getJarInferEnabled());
+    getCanonicalizeLists().convention(defaults.getCanonicalizeLists());
+    if (preset != null) {
+      // The options' own preset still configures the options the defaults have no value for
+      applyPreset(preset);
+    }
+  }
+
+  /** Called before the options are read for fingerprinting or to compute arguments. */
+  void beforeRead() {
+    getCanonicalizeLists().finalizeValue();
+    if (getCanonicalizeLists().getOrElse(false) && !listOptionsCanonicalized) {
+      listOptionsCanonicalized = true;
+      canonicalize(getAnnotatedPackages());
+      canonicalize(getUnannotatedSubPackages());
+      canonicalize(getUnannotatedClasses());
+      canonicalize(getKnownInitializers());
+      canonicalize(getExcludedClassAnnotations());
+      canonicalize(getExcludedClasses());
+      canonicalize(getExcludedFieldAnnotations());
+      canonicalize(getCustomInitializerAnnotations());
+      canonicalize(getExternalInitAnnotations());
+      canonicalize(getCheckOptionalEmptinessCustomClasses());
+      canonicalize(getCustomContractAnnotations());
+      canonicalize(getCustomNullableAnnotations());
+      canonicalize(getCustomNonnullAnnotations());
+      canonicalize(getCustomGeneratedCodeAnnotations());
+      canonicalize(getExtraFuturesClasses());
+      canonicalize(getSuppressionNameAliases());
+    }
+  }
+
+  private static void canonicalize(ListProperty<String> property) {
+    if (property.isPresent()) {
+      property.set(new ArrayList<>(new TreeSet<>(property.get())));
+    }
+    property.finalizeValue();
+  }
+
+  // Not an input in itself, but Gradle inspects getters whatever their visibility
+  @Internal
+  boolean isDisabled() {
+    beforeRead();
+    return getSeverity().getOrElse(CheckSeverity.DEFAULT) == CheckSeverity.OFF;
+  }
+
+  /**
+   * Computes the Error Prone arguments for those options.
+   *
+   * <p>All properties are finalized on first call, and the computed arguments are then memoized, so
+   * that fingerprinting and execution share the same immutable list. The memoized list isn't
+   * serialized to the configuration cache: the finalized properties are, and the list is computed
+   * again from them, once, when the cache entry is reused.
+   */
+  List<String> asArguments() {
+    List<String> arguments = this.arguments;
+    if (arguments == null) {
+      beforeRead();
+      arguments = unmodifiableList(computeArguments());
+      this.arguments = arguments;
+    }
+    return arguments;
+  }
+
+  private List<String> computeArguments() {
     List<String> args = new ArrayList<>();
-    args.add("-Xep:NullAway" + severityToArg(getSeverity().getOrElse(CheckSeverity.DEFAULT)));
-    maybeAddListOption(args, "AnnotatedPackages", getAnnotatedPackages());
-    maybeAddBooleanOption(args, "OnlyNullMarked", getOnlyNullMarked());
-    maybeAddListOption(args, "UnannotatedSubPackages", getUnannotatedSubPackages());
-    maybeAddListOption(args, "UnannotatedClasses", getUnannotatedClasses());
-    maybeAddListOption(args, "KnownInitializers", getKnownInitializers());
+    getSeverity().finalizeValue();
+    getOnlyNullAway().finalizeValue();
+    getOnlyNullMarked().finalizeValue();
+    getAnnotatedPackages().finalizeValue();
+    getNullMarkedIndexFile().finalizeValue();
+    getLibraryNullMarkedIndexFiles().finalizeValue();
+    getDependencyNullnessSummaryFiles().finalizeValue();
+    getChangedPackagesFile().finalizeValue();
+    List<String> nullMarkedPackages = emptyList();
+    List<String> nullUnmarkedPackages = new ArrayList<>();
+    boolean inferOnlyNullMarked = false;
+    if (getNullMarkedIndexFile().isPresent()) {
+      NullMarkedIndex index = NullMarkedIndex.read(getNullMarkedIndexFile().get().getAsFile());
+      inferOnlyNullMarked =
+          index.isModuleNullMarked()
+              && !getOnlyNullMarked().isPresent()
+              && getAnnotatedPackages().getOrElse(emptyList()).isEmpty();
+      if (!inferOnlyNullMarked && !getOnlyNullMarked().getOrElse(false)) {
+        nullMarkedPackages = PackagePrefixTrie.exactEntries(index.getNullMarkedPackages());
+        nullUnmarkedPackages.addAll(
+            PackagePrefixTrie.exactEntries(index.getNullUnmarkedPackages()));
+      }
+    }
+    // Sorted, so the arguments don't depend on the order of the classpath
+    Set<String> dependencyAnnotatedPackages = new TreeSet<>();
+    Set<String> dependencyUnannotatedPackages = new TreeSet<>();
+    if (!inferOnlyNullMarked && !getOnlyNullMarked().getOrElse(false)) {
+      for (File indexFile : getLibraryNullMarkedIndexFiles()) {
+        NullMarkedIndex index = NullMarkedIndex.read(indexFile);
+        dependencyAnnotatedPackages.addAll(
+            PackagePrefixTrie.exactEntries(index.getNullMarkedPackages()));
+        dependencyUnannotatedPackages.addAll(
+            PackagePrefixTrie.exactEntries(index.getNullUnmarkedPackages()));
+      }
+    }
+    Set<String> dependencyKnownInitializers = new TreeSet<>();
+    for (File summaryFile : getDependencyNullnessSummaryFiles()) {
+      NullnessSummary summary = NullnessSummary.read(summaryFile);
+      if (!inferOnlyNullMarked && !getOnlyNullMarked().getOrElse(false)) {
+        // Summaries list every package, so entries must not cover subpackages
+        dependencyAnnotatedPackages.addAll(
+            PackagePrefixTrie.exactEntries(summary.getAnnotatedPackages()));
+        dependencyUnannotatedPackages.addAll(
+            PackagePrefixTrie.exactEntries(summary.getUnannotatedSubPackages()));
+      }
+      dependencyKnownInitializers.addAll(summary.getKnownInitializers());
+    }
+    nullUnmarkedPackages.addAll(dependencyUnannotatedPackages);
+    List<String> annotatedPackages =
+        packagesOption("AnnotatedPackages", getAnnotatedPackages(), nullMarkedPackages);
+    CheckSeverity severity = getSeverity().getOrElse(CheckSeverity.DEFAULT);
+    if (getChangedPackagesFile().isPresent() && severity != CheckSeverity.OFF) {
+      List<String> changedPackages = readListFile(getChangedPackagesFile().get().getAsFile());
+      if (changedPackages.isEmpty()
+          || (!inferOnlyNullMarked
+              && !getOnlyNullMarked().getOrElse(false)
+              && !anyAnnotated(annotatedPackages, changedPackages))) {
+        LOGGER.info("NullAway: disabled, as no annotated package changed");
+        severity = CheckSeverity.OFF;
+      } else {
+        LOGGER.info("NullAway: only reporting on changed packages {}", changedPackages);
+        this.changedPackages = changedPackages;
+      }
+    }
+    if (!dependencyAnnotatedPackages.isEmpty() && severity != CheckSeverity.OFF) {
+      List<String> packages = new ArrayList<>(annotatedPackages);
+      packages.addAll(dependencyAnnotatedPackages);
+      annotatedPackages = PackagePrefixTrie.minimize(packages, removed -> {});
+    }
+
+    if (getOnlyNullAway().getOrElse(false) && severity != CheckSeverity.OFF) {
+      // Explicitly configured checks, including NullAway below, override this whatever their order
+      args.add("-XepDisableAllChecks");
+    }
+    args.add("-Xep:NullAway" + severityToArg(severity));
+    addPackagesOption(args, "AnnotatedPackages", annotatedPackages);
+    if (inferOnlyNullMarked) {
+      addStringOption(args, "OnlyNullMarked", "true");
+    } else {
+      maybeAddBooleanOption(args, "OnlyNullMarked", getOnlyNullMarked());
+    }
+    maybeAddPackagesOption(
+        args, "UnannotatedSubPackages", getUnannotatedSubPackages(), nullUnmarkedPackages);
+    maybeAddListOption(
+        args,
+        "UnannotatedClasses",
+        getUnannotatedClasses(),
+        getUnannotatedClassesFile(),
+        emptyList());
+    maybeAddListOption(
+        args,
+        "KnownInitializers",
+        getKnownInitializers(),
+        getKnownInitializersFile(),
+        dependencyKnownInitializers);
     maybeAddListOption(args, "ExcludedClassAnnotations", getExcludedClassAnnotations());
-    maybeAddListOption(args, "ExcludedClasses", getExcludedClasses());
+    maybeAddListOption(
+        args, "ExcludedClasses", getExcludedClasses(), getExcludedClassesFile(), emptyList());
     maybeAddListOption(args, "ExcludedFieldAnnotations", getExcludedFieldAnnotations());
     maybeAddListOption(args, "CustomInitializerAnnotations", getCustomInitializerAnnotations());
     maybeAddListOption(args, "ExternalInitAnnotations", getExternalInitAnnotations());
@@ -409,6 +930,7 @@ public abstract class NullAwayOptions {
     maybeAddListOption(args, "SuppressionNameAliases", getSuppressionNameAliases());
     maybeAddBooleanOption(
         args, "WarnOnGenericInferenceFailure", getWarnOnGenericInferenceFailure());
+    maybeAddBooleanOption(args, "JarInferEnabled", getJarInferEnabled());
     return args;
   }
 
@@ -416,13 +938,15 @@ public abstract class NullAwayOptions {
     return severity == CheckSeverity.DEFAULT ? "" : ":" + severity;
   }
 
-  private void maybeAddBooleanOption(List<String> args, String name, Provider<Boolean> value) {
+  private void maybeAddBooleanOption(List<String> args, String name, Property<Boolean> value) {
+    value.finalizeValue();
     if (value.isPresent()) {
       addStringOption(args, name, Boolean.toString(value.get()));
     }
   }
 
-  private void maybeAddListOption(List<String> args, String name, Provider<List<String>> value) {
+  private void maybeAddListOption(List<String> args, String name, ListProperty<String> value) {
+    value.finalizeValue();
     List<String> list = value.getOrElse(emptyList());
     if (list.isEmpty()) {
       return;
@@ -430,7 +954,131 @@ public abstract class NullAwayOptions {
     addStringOption(args, name, String.join(",", list));
   }
 
-  private void maybeAddStringOption(List<String> args, String name, Provider<String> value) {
+  private void maybeAddPackagesOption(
+      List<String> args, String name, ListProperty<String> value, List<String> indexed) {
+    addPackagesOption(args, name, packagesOption(name, value, indexed));
+  }
+
+  private void addPackagesOption(List<String> args, String name, List<String> list) {
+    if (list.isEmpty()) {
+      return;
+    }
+    addStringOption(args, name, String.join(",", list));
+  }
+
+  /**
+   * Returns the packages from the property merged with the indexed ones, without entries that are
+   * covered by other entries.
+   */
+  private List<String> packagesOption(
+      String name, ListProperty<String> value, List<String> indexed) {
+    value.finalizeValue();
+    List<String> list = value.getOrElse(emptyList());
+    if (!indexed.isEmpty()) {
+      list = new ArrayList<>(list);
+      list.addAll(indexed);
+      if (listOptionsCanonicalized) {
+        list = new ArrayList<>(new TreeSet<>(list));
+      }
+    }
+    List<String> removed = new ArrayList<>();
+    list = PackagePrefixTrie.minimize(list, removed::add);
+    if (!removed.isEmpty()) {
+      LOGGER.info(
+          "NullAway: removed {} from {}, as they're already covered by other entries",
+          removed,
+          name);
+    }
+    return list;
+  }
+
+  /**
+   * Returns whether any of the given packages is matched by the {@code annotatedPackages}, as
+   * NullAway would match the classes of that package.
+   */
+  private static boolean anyAnnotated(List<String> annotatedPackages, List<String> packages) {
+    if (annotatedPackages.isEmpty()) {
+      return false;
+    }
+    Pattern pattern = PackagePrefixTrie.toPattern(annotatedPackages);
+    for (String packageName : packages) {
+      if (PackagePrefixTrie.matchesClassesOf(pattern, packageName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the Error Prone {@code excludedPaths} to use with those options: the given ones, also
+   * matching the source files outside of the {@link #getChangedPackagesFile() changed packages} if
+   * any.
+   */
+  @Nullable String excludedPaths(@Nullable String excludedPaths) {
+    asArguments();
+    List<String> changedPackages = this.changedPackages;
+    if (changedPackages == null) {
+      return excludedPaths;
+    }
+    Set<String> alternatives = new TreeSet<>();
+    for (String packageName : changedPackages) {
+      alternatives.add(Pattern.quote(packageName.replace('.', '/')));
+    }
+    // Error Prone matches the path from the file URI: exclude those not directly in a package
+    String unchanged = "(?!.*/(?:" + String.join("|", alternatives) + ")/[^/]+\\.java$).*";
+    return excludedPaths == null ? unchanged : "(?:" + excludedPaths + ")|" + unchanged;
+  }
+
+  private void maybeAddListOption(
+      List<String> args,
+      String name,
+      ListProperty<String> value,
+      RegularFileProperty file,
+      Collection<String> extra) {
+    file.finalizeValue();
+    if (!file.isPresent() && extra.isEmpty()) {
+      maybeAddListOption(args, name, value);
+      return;
+    }
+    value.finalizeValue();
+    List<String> list = new ArrayList<>(value.getOrElse(emptyList()));
+    if (file.isPresent()) {
+      list.addAll(readListFile(file.get().getAsFile()));
+    }
+    // Values from other projects are only added if not already listed
+    for (String entry : extra) {
+      if (!list.contains(entry)) {
+        list.add(entry);
+      }
+    }
+    if (listOptionsCanonicalized) {
+      list = new ArrayList<>(new TreeSet<>(list));
+    }
+    if (list.isEmpty()) {
+      return;
+    }
+    addStringOption(args, name, String.join(",", list));
+  }
+
+  static List<String> readListFile(File file) {
+    List<String> list = new ArrayList<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          list.add(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return list;
+  }
+
+  private void maybeAddStringOption(List<String> args, String name, Property<String> value) {
+    value.finalizeValue();
     if (value.isPresent()) {
       addStringOption(args, name, value.get());
     }
@@ -1,16 +1,52 @@
 package net.ltgt.gradle.nullaway;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 import net.ltgt.gradle.errorprone.CheckSeverity;
 import net.ltgt.gradle.errorprone.ErrorProneOptions;
 import net.ltgt.gradle.errorprone.ErrorPronePlugin;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Named;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.artifacts.type.ArtifactTypeDefinition;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.plugins.JavaBasePlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.services.BuildServiceRegistry;
+import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.language.base.plugins.LifecycleBasePlugin;
 import org.gradle.process.CommandLineArgumentProvider;
 import org.gradle.util.GradleVersion;
 import org.jspecify.annotations.Nullable;
@@ -18,6 +54,34 @@ import org.jspecify.annotations.Nullable;
 public class NullAwayPlugin implements Plugin<Project> {
   static final String PLUGIN_ID = "net.ltgt.nullaway";
   static final String EXTENSION_NAME = "nullaway";
+  static final String JARINFER_CONFIGURATION_NAME = "nullawayJarInfer";
+  static final String REPORT_ELEMENTS_CONFIGURATION_NAME = "nullawayReportElements";
+  static final String REPORT_AGGREGATION_CONFIGURATION_NAME = "nullawayReportAggregation";
+  static final String AGGREGATE_REPORTS_TASK_NAME = "aggregateNullAwayReports";
+
+  private static final Logger LOGGER = Logging.getLogger(NullAwayPlugin.class);
+
+  private static final Attribute<String> ARTIFACT_TYPE_ATTRIBUTE =
+      Attribute.of("artifactType", String.class);
+  private static final String JARINFER_MODEL_ARTIFACT_TYPE = "nullaway-jarinfer-model";
+  private static final String NULL_MARKED_INDEX_ARTIFACT_TYPE = "nullaway-null-marked-index";
+  private static final String NULLNESS_SUMMARY_ARTIFACT_TYPE = "nullaway-nullness-summary";
+  private static final String SARIF_ARTIFACT_TYPE = "sarif";
+  // Distinct from all the categories of the variants published by Gradle's plugins
+  private static final String REPORT_CATEGORY = "nullaway-report";
+
+  // javac options taking a value that affect how sources are parsed and attributed
+  private static final Set<String> LANGUAGE_LEVEL_OPTIONS =
+      new TreeSet<>(
+          Arrays.asList(
+              "--release",
+              "-source",
+              "--source",
+              "--system",
+              "--add-exports",
+              "--add-reads",
+              "--add-modules",
+              "--limit-modules"));
 
   @Override
   public void apply(Project project) {
@@ -27,38 +91,922 @@ public class NullAwayPlugin implements Plugin<Project> {
 
     NullAwayExtension extension =
         project.getExtensions().create(EXTENSION_NAME, NullAwayExtension.class);
+    extension.getShareTaskOptions().convention(false);
+    extension.getShareTaskOptions().finalizeValueOnRead();
+    extension.getIndexNullMarkedPackages().convention(false);
+    extension.getIndexNullMarkedPackages().finalizeValueOnRead();
+    extension.getExcludeGeneratedSources().convention(false);
+    extension.getSeparateCheckTask().convention(false);
+    extension.getDeferInContinuousBuild().convention(false);
+    extension.getIncludeDependentPackages().convention(false);
+    extension.getIndexLibraryNullMarkedPackages().convention(false);
+    extension.getIndexLibraryNullMarkedPackages().finalizeValueOnRead();
+    extension.getShareNullnessSummaries().convention(false);
+    extension.getShareNullnessSummaries().finalizeValueOnRead();
+    extension.getOnlyWhenChecking().convention(false);
+    extension.getReportBuildOverhead().convention(false);
+    extension.getReportBuildOverhead().finalizeValueOnRead();
+    extension
+        .getCheckingTasks()
+        .convention(
+            Arrays.asList(
+                LifecycleBasePlugin.CHECK_TASK_NAME, LifecycleBasePlugin.BUILD_TASK_NAME));
+
+    NullAwayOptions buildDefaults = NullAwayBuildDefaults.find(project.getGradle());
+    if (buildDefaults != null) {
+      // The JSpecify mode falls back to the build-wide value only after the project-level preset,
+      // see NullAwayOptions.conventionsFrom(NullAwayExtension, NullAwayOptions)
+      extension.getOnlyNullMarked().convention(buildDefaults.getOnlyNullMarked());
+      extension.getAnnotatedPackages().convention(buildDefaults.getAnnotatedPackages());
+      extension.getCanonicalizeLists().convention(buildDefaults.getCanonicalizeLists());
+      extension.getInferLibraryModels().convention(buildDefaults.getJarInferEnabled());
+    }
+
+    if (project == project.getRootProject()) {
+      configureReportAggregation(project);
+    }
+
+    boolean continuous = project.getGradle().getStartParameter().isContinuous();
+    Provider<Boolean> deferred =
+        extension.getDeferInContinuousBuild().map(defer -> defer && continuous);
 
     project
         .getPluginManager()
         .withPlugin(
             ErrorPronePlugin.PLUGIN_ID,
             ignored -> {
+              NullAwayOptions projectOptions =
+                  project.getObjects().newInstance(NullAwayOptions.class, extension);
+              if (buildDefaults != null) {
+                // Project-level values take precedence over the build-wide defaults
+                projectOptions.conventionsFrom(extension, buildDefaults);
+              }
+
+              extension
+                  .getSourceSets()
+                  .configureEach(
+                      sourceSetOptions -> {
+                        sourceSetOptions.conventionsFrom(projectOptions);
+                        if (NullAwaySourceSetOptions.isTestSourceSet(sourceSetOptions.getName())) {
+                          sourceSetOptions.testConventions();
+                        }
+                      });
+
+              project
+                  .getPlugins()
+                  .withType(
+                      JavaBasePlugin.class,
+                      javaBasePlugin -> {
+                        configureJarInfer(project);
+                        Configuration reportElements = configureReportElements(project);
+                        project
+                            .getDependencies()
+                            .registerTransform(
+                                IndexNullMarkedJar.class,
+                                spec -> {
+                                  spec.getFrom()
+                                      .attribute(
+                                          ARTIFACT_TYPE_ATTRIBUTE,
+                                          ArtifactTypeDefinition.JAR_TYPE);
+                                  spec.getTo()
+                                      .attribute(
+                                          ARTIFACT_TYPE_ATTRIBUTE,
+                                          NULL_MARKED_INDEX_ARTIFACT_TYPE);
+                                });
+                        configureSourceSets(project, extension, deferred, reportElements);
+                      });
+
+              Provider<Boolean> skipped = skippedProvider(project, extension);
+              Provider<Boolean> runsInCheckTask =
+                  extension
+                      .getSeparateCheckTask()
+                      .zip(deferred, (separateCheckTask, defer) -> separateCheckTask || defer);
+
               project
                   .getTasks()
                   .withType(JavaCompile.class)
                   .configureEach(
                       task -> {
-                        ErrorProneOptions errorproneOptions =
-                            ((ExtensionAware) task.getOptions())
-                                .getExtensions()
-                                .getByType(ErrorProneOptions.class);
-                        NullAwayOptions nullawayOptions =
-                            ((ExtensionAware) errorproneOptions)
-                                .getExtensions()
-                                .create(EXTENSION_NAME, NullAwayOptions.class, extension);
-
-                        errorproneOptions
-                            .getErrorproneArgumentProviders()
-                            .add(new NullAwayArgumentProvider(nullawayOptions));
+                        ErrorProneOptions errorproneOptions = errorproneOptions(task);
+                        SourceSet sourceSet = findSourceSet(project, task);
+                        @Nullable NullAwayOptions sourceSetOptions =
+                            sourceSet == null
+                                ? null
+                                : extension.getSourceSets().findByName(sourceSet.getName());
+                        NullAwayOptions defaults =
+                            sourceSetOptions != null ? sourceSetOptions : projectOptions;
+                        NullAwayOptions nullawayOptions;
+                        if (extension.getShareTaskOptions().get()) {
+                          nullawayOptions =
+                              ((ExtensionAware) errorproneOptions)
+                                  .getExtensions()
+                                  .create(
+                                      NullAwayOptions.class,
+                                      EXTENSION_NAME,
+                                      InheritingNullAwayOptions.class,
+                                      defaults);
+                        } else {
+                          nullawayOptions =
+                              ((ExtensionAware) errorproneOptions)
+                                  .getExtensions()
+                                  .create(EXTENSION_NAME, NullAwayOptions.class, extension);
+                          if (buildDefaults != null || defaults != projectOptions) {
+                            nullawayOptions.conventionsFrom(defaults);
+                          }
+                        }
+
+                        configureExcludedPaths(
+                            project, extension, task, sourceSet, errorproneOptions);
+                        // Only wired when enabled, so shared task options stay an empty shell
+                        if (sourceSet != null) {
+                          if (extension.getChangedSince().isPresent()) {
+                            String listTaskName = listChangedPackagesTaskName(sourceSet);
+                            // The task is only registered once the project has been evaluated
+                            nullawayOptions
+                                .getChangedPackagesFile()
+                                .set(
+                                    extension
+                                        .getChangedSince()
+                                        .flatMap(
+                                            revision ->
+                                                project
+                                                    .getTasks()
+                                                    .named(
+                                                        listTaskName, ListChangedPackages.class)
+                                                    .flatMap(
+                                                        ListChangedPackages::getPackagesFile)));
+                          }
+                          if (extension.getIndexLibraryNullMarkedPackages().get()) {
+                            nullawayOptions
+                                .getLibraryNullMarkedIndexFiles()
+                                .from(
+                                    libraryArtifacts(
+                                        project,
+                                        extension.getIndexLibraryNullMarkedPackages(),
+                                        sourceSet,
+                                        NULL_MARKED_INDEX_ARTIFACT_TYPE));
+                          }
+                          if (extension.getShareNullnessSummaries().get()) {
+                            nullawayOptions
+                                .getDependencyNullnessSummaryFiles()
+                                .from(
+                                    projectArtifacts(
+                                        project,
+                                        extension.getShareNullnessSummaries(),
+                                        sourceSet,
+                                        NULLNESS_SUMMARY_ARTIFACT_TYPE));
+                          }
+                          if (extension.getIndexNullMarkedPackages().get()) {
+                            nullawayOptions
+                                .getNullMarkedIndexFile()
+                                .set(nullMarkedIndexFile(project, extension, sourceSet));
+                          }
+                        }
+
+                        NullAwayArgumentProvider argumentProvider =
+                            new NullAwayArgumentProvider(
+                                errorproneOptions, nullawayOptions, runsInCheckTask, skipped);
+                        errorproneOptions.getErrorproneArgumentProviders().add(argumentProvider);
+                        if (extension.getReportBuildOverhead().get()) {
+                          Provider<NullAwayBuildService> buildService =
+                              registerBuildService(project);
+                          task.usesService(buildService);
+                          task.doFirst(new ReportTaskStarted(buildService, argumentProvider));
+                          task.doLast(
+                              new ReportTaskFinished(
+                                  buildService,
+                                  argumentProvider,
+                                  effectivePreset(project, nullawayOptions)));
+                        }
                       });
             });
   }
 
+  /**
+   * Returns the name of the preset used by the given task-level options, inherited from the source
+   * set or the project or else configured on the task, or {@code none}.
+   */
+  private static Provider<String> effectivePreset(Project project, NullAwayOptions options) {
+    return project
+        .getProviders()
+        .provider(
+            () -> {
+              @Nullable NullAwayPreset preset = options.effectivePreset();
+              return preset != null ? preset.name() : "none";
+            });
+  }
+
+  /**
+   * Returns whether NullAway is turned off in this build because none of the checking tasks were
+   * requested.
+   */
+  private static Provider<Boolean> skippedProvider(Project project, NullAwayExtension extension) {
+    ProviderFactory providers = project.getProviders();
+    List<String> requestedTasks = project.getGradle().getStartParameter().getTaskNames();
+    return extension
+        .getOnlyWhenChecking()
+        .flatMap(
+            onlyWhenChecking -> {
+              if (!onlyWhenChecking) {
+                return providers.provider(() -> false);
+              }
+              return providers
+                  .of(
+                      CheckingTasksRequested.class,
+                      spec -> {
+                        spec.getParameters().getRequestedTasks().set(requestedTasks);
+                        spec.getParameters().getCheckingTasks().set(extension.getCheckingTasks());
+                      })
+                  .map(requested -> !requested);
+            });
+  }
+
+  /**
+   * Registers the build service collecting the overhead of NullAway, if not already registered by
+   * another project, along with the action reporting it at the end of the build.
+   */
+  private static Provider<NullAwayBuildService> registerBuildService(Project project) {
+    BuildServiceRegistry sharedServices = project.getGradle().getSharedServices();
+    boolean registered =
+        sharedServices.getRegistrations().findByName(NullAwayBuildService.SERVICE_NAME) != null;
+    Provider<NullAwayBuildService> buildService =
+        sharedServices.registerIfAbsent(
+            NullAwayBuildService.SERVICE_NAME,
+            NullAwayBuildService.class,
+            spec ->
+                spec.getParameters()
+                    .getHistoryFile()
+                    .set(new File(projectCacheDir(project), "nullaway/overhead-history.csv")));
+    if (!registered && GradleVersion.current().compareTo(GradleVersion.version("8.1")) >= 0) {
+      project.getObjects().newInstance(NullAwayBuildSummary.Registrar.class).register(buildService);
+    }
+    return buildService;
+  }
+
+  /**
+   * Returns the directory Gradle uses for project-specific caches, {@code .gradle} in the root
+   * project unless overridden; unlike the build directory, it survives {@code clean}.
+   */
+  private static File projectCacheDir(Project project) {
+    @Nullable File projectCacheDir = project.getGradle().getStartParameter().getProjectCacheDir();
+    return projectCacheDir != null ? projectCacheDir : new File(project.getRootDir(), ".gradle");
+  }
+
+  private static String indexTaskName(SourceSet sourceSet) {
+    return sourceSet.getTaskName("index", "NullMarkedPackages");
+  }
+
+  private static String listChangedPackagesTaskName(SourceSet sourceSet) {
+    return sourceSet.getTaskName("list", "ChangedPackages");
+  }
+
+  private static String summaryTaskName(SourceSet sourceSet) {
+    return sourceSet.getTaskName("generate", "NullnessSummary");
+  }
+
+  private static String checkTaskName(SourceSet sourceSet) {
+    return sourceSet.getTaskName("nullaway", "Check");
+  }
+
+  private static void configureJarInfer(Project project) {
+    Configuration jarInfer =
+        project
+            .getConfigurations()
+            .create(
+                JARINFER_CONFIGURATION_NAME,
+                configuration -> {
+                  configuration.setDescription(
+                      "JarInfer, used to infer library models for NullAway");
+                  configuration.setCanBeConsumed(false);
+                });
+    project
+        .getDependencies()
+        .registerTransform(
+            JarInferTransform.class,
+            spec -> {
+              spec.getFrom().attribute(ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.JAR_TYPE);
+              spec.getTo().attribute(ARTIFACT_TYPE_ATTRIBUTE, JARINFER_MODEL_ARTIFACT_TYPE);
+              spec.getParameters().getJarInferClasspath().from(jarInfer);
+            });
+  }
+
+  /**
+   * Returns whether library models are inferred, failing if enabled without any dependency to run
+   * JarInfer with, as the transform would otherwise silently produce no models.
+   */
+  private static Provider<Boolean> inferLibraryModels(
+      Project project, NullAwayExtension extension) {
+    return extension
+        .getInferLibraryModels()
+        .map(
+            enabled -> {
+              if (enabled
+                  && project
+                      .getConfigurations()
+                      .getByName(JARINFER_CONFIGURATION_NAME)
+                      .getDependencies()
+                      .isEmpty()) {
+                throw new GradleException(
+                    "inferLibraryModels is enabled but the "
+                        + JARINFER_CONFIGURATION_NAME
+                        + " configuration has no dependencies; add JarInfer's command-line"
+                        + " interface, e.g. "
+                        + JARINFER_CONFIGURATION_NAME
+                        + "(\"com.uber.nullaway:jar-infer-cli:<version>\")");
+              }
+              return enabled;
+            });
+  }
+
+  /** Creates the configuration publishing the SARIF reports of the project's check tasks. */
+  private static Configuration configureReportElements(Project project) {
+    return project
+        .getConfigurations()
+        .create(
+            REPORT_ELEMENTS_CONFIGURATION_NAME,
+            configuration -> {
+              configuration.setDescription("SARIF reports of the NullAway check tasks");
+              configuration.setCanBeConsumed(true);
+              configuration.setCanBeResolved(false);
+              configuration.attributes(
+                  attributes ->
+                      attributes.attribute(
+                          Category.CATEGORY_ATTRIBUTE,
+                          project.getObjects().named(Category.class, REPORT_CATEGORY)));
+            });
+  }
+
+  /**
+   * Registers the task merging the SARIF reports of the projects of the {@code
+   * nullawayReportAggregation} configuration, which defaults to all the projects of the build.
+   *
+   * <p>Projects that don't publish reports (e.g. because they don't apply this plugin) are ignored.
+   */
+  private static void configureReportAggregation(Project project) {
+    Configuration aggregation =
+        project
+            .getConfigurations()
+            .create(
+                REPORT_AGGREGATION_CONFIGURATION_NAME,
+                configuration -> {
+                  configuration.setDescription("Projects whose NullAway reports are aggregated");
+                  configuration.setCanBeConsumed(false);
+                  configuration.setCanBeResolved(true);
+                  configuration.attributes(
+                      attributes ->
+                          attributes.attribute(
+                              Category.CATEGORY_ATTRIBUTE,
+                              project.getObjects().named(Category.class, REPORT_CATEGORY)));
+                  configuration.withDependencies(
+                      dependencies -> {
+                        if (dependencies.isEmpty()) {
+                          for (Project p : project.getAllprojects()) {
+                            dependencies.add(project.getDependencies().create(p));
+                          }
+                        }
+                      });
+                });
+    project
+        .getTasks()
+        .register(
+            AGGREGATE_REPORTS_TASK_NAME,
+            AggregateNullAwayReports.class,
+            task -> {
+              task.setDescription("Merges the SARIF reports of the NullAway check tasks.");
+              task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+              task.getReports()
+                  .from(
+                      aggregation
+                          .getIncoming()
+                          .artifactView(view -> view.setLenient(true))
+                          .getFiles());
+              task.getAggregateReportFile()
+                  .convention(
+                      project
+                          .getLayout()
+                          .getBuildDirectory()
+                          .file("reports/nullaway/aggregate.sarif"));
+            });
+  }
+
+  /**
+   * Returns the given artifacts of the external dependencies of the source set's compile classpath,
+   * if enabled.
+   */
+  private static FileCollection libraryArtifacts(
+      Project project, Provider<Boolean> enabled, SourceSet sourceSet, String artifactType) {
+    return dependencyArtifacts(
+        project,
+        enabled,
+        sourceSet,
+        artifactType,
+        id -> id instanceof ModuleComponentIdentifier,
+        false);
+  }
+
+  /**
+   * Returns the given artifacts of the project dependencies of the source set's compile classpath,
+   * if enabled.
+   *
+   * <p>Projects that don't publish such artifacts (e.g. because they don't apply this plugin) are
+   * ignored.
+   */
+  private static FileCollection projectArtifacts(
+      Project project, Provider<Boolean> enabled, SourceSet sourceSet, String artifactType) {
+    return dependencyArtifacts(
+        project,
+        enabled,
+        sourceSet,
+        artifactType,
+        id -> id instanceof ProjectComponentIdentifier,
+        true);
+  }
+
+  private static FileCollection dependencyArtifacts(
+      Project project,
+      Provider<Boolean> enabled,
+      SourceSet sourceSet,
+      String artifactType,
+      Spec<ComponentIdentifier> componentFilter,
+      boolean lenient) {
+    String compileClasspath = sourceSet.getCompileClasspathConfigurationName();
+    return project.files(
+        enabled
+            .orElse(false)
+            .map(
+                isEnabled ->
+                    isEnabled
+                        ? project
+                            .getConfigurations()
+                            .getByName(compileClasspath)
+                            .getIncoming()
+                            .artifactView(
+                                view -> {
+                                  view.getAttributes()
+                                      .attribute(ARTIFACT_TYPE_ATTRIBUTE, artifactType);
+                                  view.componentFilter(componentFilter);
+                                  view.setLenient(lenient);
+                                })
+                            .getFiles()
+                        : project.files()));
+  }
+
+  private static Provider<RegularFile> nullMarkedIndexFile(
+      Project project, NullAwayExtension extension, SourceSet sourceSet) {
+    String taskName = indexTaskName(sourceSet);
+    // The task is only registered when indexing is enabled, so look it up lazily
+    return extension
+        .getIndexNullMarkedPackages()
+        .flatMap(
+            enabled ->
+                enabled
+                    ? project
+                        .getTasks()
+                        .named(taskName, IndexNullMarkedPackages.class)
+                        .flatMap(IndexNullMarkedPackages::getIndexFile)
+                    : project.getObjects().fileProperty());
+  }
+
+  private static void configureSourceSets(
+      Project project,
+      NullAwayExtension extension,
+      Provider<Boolean> deferred,
+      Configuration reportElements) {
+    project
+        .getExtensions()
+        .getByType(SourceSetContainer.class)
+        .configureEach(
+            sourceSet -> {
+              if (NullAwaySourceSetOptions.isTestSourceSet(sourceSet.getName())) {
+                extension.getSourceSets().maybeCreate(sourceSet.getName());
+              }
+              FileCollection libraryModels =
+                  libraryArtifacts(
+                      project,
+                      inferLibraryModels(project, extension),
+                      sourceSet,
+                      JARINFER_MODEL_ARTIFACT_TYPE);
+              project
+                  .getDependencies()
+                  .add(sourceSet.getAnnotationProcessorConfigurationName(), libraryModels);
+              whenEvaluated(
+                  project,
+                  ignored -> {
+                    if (extension.getIndexNullMarkedPackages().get()) {
+                      project
+                          .getTasks()
+                          .register(
+                              indexTaskName(sourceSet),
+                              IndexNullMarkedPackages.class,
+                              task -> configureIndexTask(project, sourceSet, task));
+                    }
+                    if (extension.getChangedSince().isPresent()) {
+                      project
+                          .getTasks()
+                          .register(
+                              listChangedPackagesTaskName(sourceSet),
+                              ListChangedPackages.class,
+                              task ->
+                                  configureListChangedPackagesTask(
+                                      project, extension, sourceSet, task));
+                    }
+                  });
+              TaskProvider<GenerateNullnessSummary> summaryTask =
+                  project
+                      .getTasks()
+                      .register(
+                          summaryTaskName(sourceSet),
+                          GenerateNullnessSummary.class,
+                          task -> configureSummaryTask(project, sourceSet, task));
+              project
+                  .getConfigurations()
+                  .matching(
+                      configuration ->
+                          configuration
+                              .getName()
+                              .equals(sourceSet.getApiElementsConfigurationName()))
+                  .configureEach(
+                      apiElements ->
+                          apiElements
+                              .getOutgoing()
+                              .getVariants()
+                              .create(
+                                  "nullnessSummary",
+                                  variant -> {
+                                    variant.attributes(
+                                        attributes ->
+                                            attributes.attribute(
+                                                ARTIFACT_TYPE_ATTRIBUTE,
+                                                NULLNESS_SUMMARY_ARTIFACT_TYPE));
+                                    variant.artifact(
+                                        summaryTask.flatMap(
+                                            GenerateNullnessSummary::getSummaryFile),
+                                        artifact ->
+                                            artifact.setType(NULLNESS_SUMMARY_ARTIFACT_TYPE));
+                                  }));
+              TaskProvider<NullAwayCheck> checkTask =
+                  project
+                      .getTasks()
+                      .register(
+                          checkTaskName(sourceSet),
+                          NullAwayCheck.class,
+                          task ->
+                              configureCheckTask(
+                                  project, sourceSet, deferred, libraryModels, task));
+              // Only publish reports when the check task is what runs NullAway, so aggregating them
+              // doesn't run a second analysis of sources already analyzed during compilation
+              whenEvaluated(
+                  project,
+                  ignored -> {
+                    if (extension.getSeparateCheckTask().get() || deferred.get()) {
+                      reportElements
+                          .getOutgoing()
+                          .artifact(
+                              checkTask.flatMap(NullAwayCheck::getSarifReportFile),
+                              artifact -> artifact.setType(SARIF_ARTIFACT_TYPE));
+                    }
+                  });
+              project
+                  .getTasks()
+                  .named(LifecycleBasePlugin.CHECK_TASK_NAME)
+                  .configure(
+                      check ->
+                          check.dependsOn(
+                              extension
+                                  .getSeparateCheckTask()
+                                  .map(
+                                      enabled ->
+                                          enabled ? singletonList(checkTask) : emptyList())));
+              // In continuous builds, the analysis follows compilation without delaying the tasks
+              // that need the compiled classes
+              project
+                  .getTasks()
+                  .named(sourceSet.getCompileJavaTaskName())
+                  .configure(
+                      compileTask ->
+                          compileTask.finalizedBy(
+                              deferred.map(
+                                  enabled -> enabled ? singletonList(checkTask) : emptyList())));
+            });
+  }
+
+  /** Runs the action once the build script has configured the project. */
+  private static void whenEvaluated(Project project, Action<? super Project> action) {
+    if (project.getState().getExecuted()) {
+      action.execute(project);
+    } else {
+      project.afterEvaluate(action);
+    }
+  }
+
+  private static void configureIndexTask(
+      Project project, SourceSet sourceSet, IndexNullMarkedPackages task) {
+    task.setDescription(
+        "Indexes the @NullMarked and @NullUnmarked packages of the " + sourceSet + ".");
+    task.getSources()
+        .from(
+            sourceSet
+                .getJava()
+                .matching(
+                    patterns -> patterns.include("**/package-info.java", "**/module-info.java")));
+    task.getIndexFile()
+        .set(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("nullaway/" + sourceSet.getName() + "/null-marked-index.txt"));
+  }
+
+  private static void configureListChangedPackagesTask(
+      Project project, NullAwayExtension extension, SourceSet sourceSet, ListChangedPackages task) {
+    task.setDescription(
+        "Lists the packages of the " + sourceSet + " changed since the configured git revision.");
+    task.getBaseRevision().set(extension.getChangedSince());
+    task.getIncludeDependentPackages().set(extension.getIncludeDependentPackages());
+    task.getSources().from(sourceSet.getJava());
+    task.getSourceDirectories().from(sourceSet.getJava().getSourceDirectories());
+    task.getWorkingDirectory().set(project.getLayout().getProjectDirectory());
+    task.getPackagesFile()
+        .set(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("nullaway/" + sourceSet.getName() + "/changed-packages.txt"));
+  }
+
+  private static void configureSummaryTask(
+      Project project, SourceSet sourceSet, GenerateNullnessSummary task) {
+    task.setDescription("Summarizes the nullness configuration of the " + sourceSet + ".");
+    Provider<NullAwayOptions> options =
+        project
+            .getTasks()
+            .named(sourceSet.getCompileJavaTaskName(), JavaCompile.class)
+            .map(
+                t -> {
+                  NullAwayOptions nullawayOptions = nullawayOptions(t);
+                  nullawayOptions.beforeRead();
+                  return nullawayOptions;
+                });
+    task.getSources().from(sourceSet.getJava());
+    task.getSourceDirectories().from(sourceSet.getJava().getSourceDirectories());
+    task.getOnlyNullMarked().set(options.flatMap(NullAwayOptions::getOnlyNullMarked));
+    task.getAnnotatedPackages().set(options.flatMap(NullAwayOptions::getAnnotatedPackages));
+    task.getUnannotatedSubPackages()
+        .set(options.flatMap(NullAwayOptions::getUnannotatedSubPackages));
+    task.getNullMarkedIndexFile().set(options.flatMap(NullAwayOptions::getNullMarkedIndexFile));
+    task.getKnownInitializers().set(options.flatMap(NullAwayOptions::getKnownInitializers));
+    task.getKnownInitializersFile()
+        .set(options.flatMap(NullAwayOptions::getKnownInitializersFile));
+    task.getSummaryFile()
+        .set(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("nullaway/" + sourceSet.getName() + "/nullness-summary.txt"));
+  }
+
+  private static void configureCheckTask(
+      Project project,
+      SourceSet sourceSet,
+      Provider<Boolean> deferred,
+      FileCollection libraryModels,
+      NullAwayCheck task) {
+    task.setDescription("Runs NullAway on the " + sourceSet + ".");
+    task.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+    TaskProvider<JavaCompile> compileTask =
+        project.getTasks().named(sourceSet.getCompileJavaTaskName(), JavaCompile.class);
+    task.getSource().from(compileTask.map(JavaCompile::getSource));
+    // The compiled classes provide the types generated by annotation processors
+    task.getClasspath()
+        .from(
+            compileTask.map(JavaCompile::getClasspath),
+            compileTask.flatMap(JavaCompile::getDestinationDirectory));
+    task.getErrorproneClasspath()
+        .from(
+            project.getConfigurations().named(ErrorPronePlugin.CONFIGURATION_NAME),
+            libraryModels);
+    task.getNullAwayOptions().set(compileTask.map(NullAwayPlugin::nullawayOptions));
+    task.getErrorProneEnabled()
+        .set(compileTask.flatMap(t -> errorproneOptions(t).getEnabled()));
+    task.getExcludedPaths()
+        .set(compileTask.flatMap(t -> errorproneOptions(t).getExcludedPaths()));
+    task.getErrorproneArgs().convention(emptyList());
+    task.getCompilerArgs().set(compileTask.map(NullAwayPlugin::checkCompilerArgs));
+    task.getJavaCompiler().convention(compileTask.flatMap(JavaCompile::getJavaCompiler));
+    task.getShards().convention(project.getGradle().getStartParameter().getMaxWorkerCount());
+    task.getCacheResults().convention(deferred);
+    task.getIgnoreFailures().convention(deferred);
+    task.getResultCacheFile()
+        .convention(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("nullaway/" + sourceSet.getName() + "/results.txt"));
+    task.getClassesDirectory()
+        .convention(compileTask.flatMap(JavaCompile::getDestinationDirectory));
+    task.getReportFile()
+        .convention(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("reports/nullaway/" + sourceSet.getName() + ".txt"));
+    task.getSarifReportFile()
+        .convention(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("reports/nullaway/" + sourceSet.getName() + ".sarif"));
+    String projectPath =
+        project
+            .getRootDir()
+            .toPath()
+            .relativize(project.getProjectDir().toPath())
+            .toString()
+            .replace(File.separatorChar, '/');
+    task.getSarifPathPrefix().convention(projectPath.isEmpty() ? "" : projectPath + "/");
+    task.getProfile().convention(false);
+    task.getProfileReportFile()
+        .convention(
+            project
+                .getLayout()
+                .getBuildDirectory()
+                .file("reports/nullaway/" + task.getName() + "/profile.json"));
+  }
+
+  /**
+   * Returns the {@code javac} arguments of a compile task that also apply to its analysis.
+   *
+   * <p>Only the arguments affecting the language level are kept, along with {@code -Werror} that
+   * {@link NullAwayCheck} applies to the findings; others, such as {@code -Xlint} or {@code
+   * -parameters}, would only add {@code javac} warnings or don't matter without class files.
+   */
+  private static List<String> checkCompilerArgs(JavaCompile task) {
+    List<String> args = new ArrayList<>();
+    if (task.getOptions().getRelease().isPresent()) {
+      args.add("--release");
+      args.add(String.valueOf(task.getOptions().getRelease().get()));
+    } else {
+      args.add("-source");
+      args.add(task.getSourceCompatibility());
+    }
+    String encoding = task.getOptions().getEncoding();
+    if (encoding != null) {
+      args.add("-encoding");
+      args.add(encoding);
+    }
+    List<String> compilerArgs = task.getOptions().getCompilerArgs();
+    for (int i = 0; i < compilerArgs.size(); i++) {
+      String arg = compilerArgs.get(i);
+      if (LANGUAGE_LEVEL_OPTIONS.contains(arg) && i + 1 < compilerArgs.size()) {
+        args.add(arg);
+        args.add(compilerArgs.get(++i));
+      } else if (arg.equals("--enable-preview")
+          || arg.equals("-Werror")
+          || arg.startsWith("-XD")
+          || LANGUAGE_LEVEL_OPTIONS.contains(arg.split("=", 2)[0])) {
+        args.add(arg);
+      }
+    }
+    return args;
+  }
+
+  private static ErrorProneOptions errorproneOptions(JavaCompile task) {
+    return ((ExtensionAware) task.getOptions()).getExtensions().getByType(ErrorProneOptions.class);
+  }
+
+  private static NullAwayOptions nullawayOptions(JavaCompile task) {
+    return ((ExtensionAware) errorproneOptions(task))
+        .getExtensions()
+        .getByType(NullAwayOptions.class);
+  }
+
+  private static void configureExcludedPaths(
+      Project project,
+      NullAwayExtension extension,
+      JavaCompile task,
+      @Nullable SourceSet sourceSet,
+      ErrorProneOptions errorproneOptions) {
+    File projectDir = project.getProjectDir();
+    Provider<Directory> buildDir = project.getLayout().getBuildDirectory();
+    Provider<Directory> generatedSourceOutputDirectory =
+        task.getOptions().getGeneratedSourceOutputDirectory();
+    FileCollection sourceDirectories =
+        sourceSet == null ? project.files() : sourceSet.getJava().getSourceDirectories();
+    errorproneOptions
+        .getExcludedPaths()
+        .convention(
+            extension
+                .getExcludeGeneratedSources()
+                .map(
+                    enabled -> {
+                      if (!enabled) {
+                        return null;
+                      }
+                      List<File> generatedDirectories = new ArrayList<>();
+                      if (generatedSourceOutputDirectory.isPresent()) {
+                        generatedDirectories.add(
+                            generatedSourceOutputDirectory.get().getAsFile());
+                      }
+                      File buildDirectory = buildDir.get().getAsFile();
+                      for (File dir : sourceDirectories) {
+                        if (isAncestor(buildDirectory, dir)) {
+                          generatedDirectories.add(dir);
+                        }
+                      }
+                      return toExcludedPathsPattern(projectDir, generatedDirectories);
+                    }));
+  }
+
+  /**
+   * Returns a regex matching files in any of the given directories, or {@code null} if there are
+   * none.
+   *
+   * <p>Paths are made relative to the project directory so the regex (an input of the task) doesn't
+   * depend on where the project is checked out.
+   */
+  static @Nullable String toExcludedPathsPattern(File projectDir, List<File> directories) {
+    Set<String> alternatives = new TreeSet<>();
+    for (File directory : directories) {
+      String path =
+          isAncestor(projectDir, directory)
+              ? projectDir.toPath().relativize(directory.toPath()).toString()
+              : directory.getPath();
+      path = path.replace(File.separatorChar, '/');
+      if (path.isEmpty()) {
+        continue;
+      }
+      // Error Prone matches the path from the file URI, which always starts with a slash
+      alternatives.add(Pattern.quote((path.startsWith("/") ? "" : "/") + path + "/"));
+    }
+    if (alternatives.isEmpty()) {
+      return null;
+    }
+    return ".*(?:" + String.join("|", alternatives) + ").*";
+  }
+
+  private static boolean isAncestor(File ancestor, File file) {
+    return file.toPath().normalize().startsWith(ancestor.toPath().normalize());
+  }
+
+  private static @Nullable SourceSet findSourceSet(Project project, JavaCompile task) {
+    SourceSetContainer sourceSets = project.getExtensions().findByType(SourceSetContainer.class);
+    if (sourceSets == null) {
+      return null;
+    }
+    for (SourceSet sourceSet : sourceSets) {
+      if (sourceSet.getCompileJavaTaskName().equals(task.getName())) {
+        return sourceSet;
+      }
+    }
+    return null;
+  }
+
   private static class NullAwayArgumentProvider implements CommandLineArgumentProvider, Named {
+    private final ErrorProneOptions errorproneOptions;
     private final NullAwayOptions nullawayOptions;
+    private final Provider<Boolean> runsInCheckTask;
+    private final Provider<Boolean> skipped;
 
-    NullAwayArgumentProvider(NullAwayOptions nullawayOptions) {
+    NullAwayArgumentProvider(
+        ErrorProneOptions errorproneOptions,
+        NullAwayOptions nullawayOptions,
+        Provider<Boolean> runsInCheckTask,
+        Provider<Boolean> skipped) {
+      this.errorproneOptions = errorproneOptions;
       this.nullawayOptions = nullawayOptions;
+      this.runsInCheckTask = runsInCheckTask;
+      this.skipped = skipped;
+    }
+
+    private boolean isErrorProneEnabled() {
+      return errorproneOptions.getEnabled().getOrElse(false);
+    }
+
+    /** Whether NullAway runs in the NullAwayCheck task, or not at all in this build. */
+    private boolean isTurnedOff() {
+      return runsInCheckTask.getOrElse(false) || skipped.getOrElse(false);
+    }
+
+    /**
+     * Whether NullAway is the only Error Prone check that runs in the compile task, so excluding
+     * paths from Error Prone's analysis only affects NullAway.
+     */
+    private boolean runsNullAwayAlone() {
+      if (!nullawayOptions.getOnlyNullAway().getOrElse(false)) {
+        return false;
+      }
+      Map<String, CheckSeverity> checks = errorproneOptions.getChecks().get();
+      for (Map.Entry<String, CheckSeverity> check : checks.entrySet()) {
+        if (!check.getKey().equals("NullAway") && check.getValue() != CheckSeverity.OFF) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Whether NullAway runs in the compile task. */
+    private boolean isActive() {
+      return isErrorProneEnabled() && !isTurnedOff() && !nullawayOptions.isDisabled();
     }
 
     @Internal
@@ -71,14 +1019,81 @@ public class NullAwayPlugin implements Plugin<Project> {
     @Nested
     @Optional
     @Nullable NullAwayOptions getNullAwayOptions() {
-      return nullawayOptions.getSeverity().getOrElse(CheckSeverity.DEFAULT) == CheckSeverity.OFF
+      // Don't even read the NullAway options when Error Prone is disabled, or NullAway runs in the
+      // NullAwayCheck task or is skipped in this build
+      return !isErrorProneEnabled() || isTurnedOff() || nullawayOptions.isDisabled()
           ? null
           : nullawayOptions;
     }
 
     @Override
     public Iterable<String> asArguments() {
-      return nullawayOptions.asArguments();
+      if (!isErrorProneEnabled()) {
+        return emptyList();
+      }
+      if (isTurnedOff()) {
+        return singletonList("-Xep:NullAway:OFF");
+      }
+      @Nullable String excludedPaths = errorproneOptions.getExcludedPaths().getOrNull();
+      @Nullable String nullawayExcludedPaths = nullawayOptions.excludedPaths(excludedPaths);
+      if (Objects.equals(nullawayExcludedPaths, excludedPaths)) {
+        return nullawayOptions.asArguments();
+      }
+      if (!runsNullAwayAlone()) {
+        // Excluding the unchanged packages would also turn off the other Error Prone checks there
+        LOGGER.info(
+            "NullAway: reporting on all packages, as other Error Prone checks run in the same"
+                + " compilation; use onlyNullAway or separateCheckTask to only report on changed"
+                + " packages");
+        return nullawayOptions.asArguments();
+      }
+      // Overrides the excludedPaths of the Error Prone options, as argument providers come last
+      List<String> arguments = new ArrayList<>(nullawayOptions.asArguments());
+      arguments.add("-XepExcludedPaths:" + nullawayExcludedPaths);
+      return arguments;
+    }
+  }
+
+  private static class ReportTaskStarted implements Action<Task> {
+    private final Provider<NullAwayBuildService> buildService;
+    private final NullAwayArgumentProvider argumentProvider;
+
+    ReportTaskStarted(
+        Provider<NullAwayBuildService> buildService, NullAwayArgumentProvider argumentProvider) {
+      this.buildService = buildService;
+      this.argumentProvider = argumentProvider;
+    }
+
+    @Override
+    public void execute(Task task) {
+      if (argumentProvider.isActive()) {
+        buildService.get().taskStarted(task.getPath());
+      }
+    }
+  }
+
+  private static class ReportTaskFinished implements Action<Task> {
+    private final Provider<NullAwayBuildService> buildService;
+    private final NullAwayArgumentProvider argumentProvider;
+    private final Provider<String> preset;
+
+    ReportTaskFinished(
+        Provider<NullAwayBuildService> buildService,
+        NullAwayArgumentProvider argumentProvider,
+        Provider<String> preset) {
+      this.buildService = buildService;
+      this.argumentProvider = argumentProvider;
+      this.preset = preset;
+    }
+
+    @Override
+    public void execute(Task task) {
+      if (argumentProvider.isActive()) {
+        buildService
+            .get()
+            .taskFinished(
+                task.getPath(), ((JavaCompile) task).getSource().getFiles().size(), preset.get());
+      }
     }
   }
 }
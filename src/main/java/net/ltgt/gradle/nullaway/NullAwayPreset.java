@@ -0,0 +1,69 @@
+package net.ltgt.gradle.nullaway;
+
+/**
+ * Named bundles of NullAway options, trading thoroughness for compilation speed.
+ *
+ * <p>Presets set the {@link NullAwayOptions#getJspecifyMode() jspecifyMode}, {@link
+ * NullAwayOptions#getCheckOptionalEmptiness() checkOptionalEmptiness}, {@link
+ * NullAwayOptions#getCheckContracts() checkContracts}, {@link
+ * NullAwayOptions#getHandleTestAssertionLibraries() handleTestAssertionLibraries}, and {@link
+ * NullAwayOptions#getExhaustiveOverride() exhaustiveOverride} options. They only set conventions:
+ * individually configured options take precedence.
+ *
+ * @see NullAwayOptions#preset(NullAwayPreset)
+ * @see NullAwayExtension#getPreset()
+ */
+public enum NullAwayPreset {
+  /**
+   * Only NullAway's core analysis, for the fastest compilations (e.g. on developer machines): all
+   * options are disabled.
+   */
+  FAST(false, false, false, false, false),
+  /**
+   * Adds the cheaper additional checks to {@link #FAST}: {@code checkContracts} and {@code
+   * handleTestAssertionLibraries} are enabled.
+   */
+  BALANCED(false, false, true, true, false),
+  /** Enables all the options, including the JSpecify mode (e.g. for CI builds). */
+  STRICT(true, true, true, true, true),
+  ;
+
+  private final boolean jspecifyMode;
+  private final boolean checkOptionalEmptiness;
+  private final boolean checkContracts;
+  private final boolean handleTestAssertionLibraries;
+  private final boolean exhaustiveOverride;
+
+  NullAwayPreset(
+      boolean jspecifyMode,
+      boolean checkOptionalEmptiness,
+      boolean checkContracts,
+      boolean handleTestAssertionLibraries,
+      boolean exhaustiveOverride) {
+    this.jspecifyMode = jspecifyMode;
+    this.checkOptionalEmptiness = checkOptionalEmptiness;
+    this.checkContracts = checkContracts;
+    this.handleTestAssertionLibraries = handleTestAssertionLibraries;
+    this.exhaustiveOverride = exhaustiveOverride;
+  }
+
+  boolean isJspecifyMode() {
+    return jspecifyMode;
+  }
+
+  boolean isCheckOptionalEmptiness() {
+    return checkOptionalEmptiness;
+  }
+
+  boolean isCheckContracts() {
+    return checkContracts;
+  }
+
+  boolean isHandleTestAssertionLibraries() {
+    return handleTestAssertionLibraries;
+  }
+
+  boolean isExhaustiveOverride() {
+    return exhaustiveOverride;
+  }
+}
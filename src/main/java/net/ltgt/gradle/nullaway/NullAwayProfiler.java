@@ -0,0 +1,247 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Measures the time Error Prone (thus NullAway, as it's the only check enabled in {@link
+ * NullAwayCheck}) spends analyzing each compilation unit.
+ *
+ * <p>Error Prone analyzes each class in a {@code TaskListener} when {@code javac} finishes its flow
+ * analysis. The profiler registers a listener before {@code javac} initializes Error Prone, and
+ * another one after it, and measures the time between them. The {@code com.sun.source.util} API
+ * is only accessed through reflection, as it isn't part of the Java 8 platform API.
+ *
+ * <p>Each worker writes its measurements to a text file with one tab-separated line per class: the
+ * relative path of its source file, its qualified name, and the time spent in nanoseconds; and a
+ * {@code total} line with the time spent by {@code javac} in nanoseconds. The task then merges them
+ * into a JSON report.
+ *
+ * @see NullAwayCheck#getProfile()
+ */
+final class NullAwayProfiler {
+  private static final String TOTAL = "total";
+
+  private final Path projectDir;
+  private final Method getKind;
+  private final Method getTypeElement;
+  private final Method getSourceFile;
+  private final List<String> lines = new ArrayList<>();
+  private long analysisStart;
+  private @Nullable String currentClass;
+  private @Nullable String currentPath;
+
+  private NullAwayProfiler(Path projectDir, Class<?> eventClass) throws NoSuchMethodException {
+    this.projectDir = projectDir;
+    this.getKind = eventClass.getMethod("getKind");
+    this.getTypeElement = eventClass.getMethod("getTypeElement");
+    this.getSourceFile = eventClass.getMethod("getSourceFile");
+  }
+
+  /** Registers a profiler on the given task, which must not have been called yet. */
+  static NullAwayProfiler attach(JavaCompiler.CompilationTask task, Path projectDir)
+      throws ReflectiveOperationException {
+    ClassLoader loader = task.getClass().getClassLoader();
+    Class<?> javacTaskClass = Class.forName("com.sun.source.util.JavacTask", false, loader);
+    Class<?> listenerClass = Class.forName("com.sun.source.util.TaskListener", false, loader);
+    Class<?> eventClass = Class.forName("com.sun.source.util.TaskEvent", false, loader);
+    Method addTaskListener = javacTaskClass.getMethod("addTaskListener", listenerClass);
+    NullAwayProfiler profiler = new NullAwayProfiler(projectDir, eventClass);
+
+    Object after = listener(loader, listenerClass, profiler::afterAnalysis);
+    boolean[] afterAdded = {false};
+    Object before =
+        listener(
+            loader,
+            listenerClass,
+            event -> {
+              // Plugins are initialized before the first event: this adds the listener after Error
+              // Prone's
+              if (!afterAdded[0]) {
+                afterAdded[0] = true;
+                try {
+                  addTaskListener.invoke(task, after);
+                } catch (ReflectiveOperationException e) {
+                  throw new IllegalStateException(e);
+                }
+              }
+              profiler.beforeAnalysis(event);
+            });
+    addTaskListener.invoke(task, before);
+    return profiler;
+  }
+
+  /** Returns a {@code TaskListener} passing the events of finished tasks to the given consumer. */
+  private static Object listener(
+      ClassLoader loader, Class<?> listenerClass, Consumer<Object> onFinished) {
+    InvocationHandler handler =
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+              case "equals":
+                return proxy == args[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              default:
+                return NullAwayProfiler.class.getSimpleName();
+            }
+          }
+          if (method.getName().equals("finished")) {
+            onFinished.accept(args[0]);
+          }
+          return null;
+        };
+    return Proxy.newProxyInstance(loader, new Class<?>[] {listenerClass}, handler);
+  }
+
+  private void beforeAnalysis(Object event) {
+    if (!isAnalyze(event)) {
+      return;
+    }
+    try {
+      TypeElement typeElement = (TypeElement) getTypeElement.invoke(event);
+      JavaFileObject sourceFile = (JavaFileObject) getSourceFile.invoke(event);
+      currentClass = typeElement == null ? "" : typeElement.getQualifiedName().toString();
+      currentPath =
+          sourceFile == null
+              ? ""
+              : NullAwayCheckAction.reportPath(projectDir, new File(sourceFile.toUri()));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+    analysisStart = System.nanoTime();
+  }
+
+  private void afterAnalysis(Object event) {
+    long elapsed = System.nanoTime() - analysisStart;
+    if (isAnalyze(event) && currentClass != null) {
+      lines.add(currentPath + "\t" + currentClass + "\t" + elapsed);
+      currentClass = null;
+    }
+  }
+
+  private boolean isAnalyze(Object event) {
+    try {
+      return String.valueOf(getKind.invoke(event)).equals("ANALYZE");
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Writes the measurements, along with the total time spent by {@code javac}. */
+  void write(File profileFile, long totalNanos) {
+    List<String> content = new ArrayList<>(lines);
+    content.add(TOTAL + "\t" + totalNanos);
+    try {
+      Files.write(profileFile.toPath(), content, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Merges the measurements of the workers into a JSON report listing the total time spent by
+   * {@code javac} and by NullAway, and the compilation units NullAway spent the most time on first.
+   */
+  static void writeReport(File reportFile, List<File> profileFiles) {
+    long totalNanos = 0;
+    long nullawayNanos = 0;
+    Map<String, Long> nanosByPath = new TreeMap<>();
+    Map<String, Set<String>> classesByPath = new TreeMap<>();
+    try {
+      for (File profileFile : profileFiles) {
+        for (String line : Files.readAllLines(profileFile.toPath(), StandardCharsets.UTF_8)) {
+          String[] fields = line.split("\t", -1);
+          if (fields.length == 2 && fields[0].equals(TOTAL)) {
+            totalNanos += Long.parseLong(fields[1]);
+          } else if (fields.length == 3) {
+            long nanos = Long.parseLong(fields[2]);
+            nullawayNanos += nanos;
+            nanosByPath.merge(fields[0], nanos, Long::sum);
+            classesByPath.computeIfAbsent(fields[0], ignored -> new TreeSet<>()).add(fields[1]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    List<Map.Entry<String, Long>> compilationUnits = new ArrayList<>(nanosByPath.entrySet());
+    compilationUnits.sort(
+        (a, b) -> {
+          int c = Long.compare(b.getValue(), a.getValue());
+          return c != 0 ? c : a.getKey().compareTo(b.getKey());
+        });
+
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("{\n");
+      writer.write("  \"totalMillis\": " + millis(totalNanos) + ",\n");
+      writer.write("  \"nullawayMillis\": " + millis(nullawayNanos) + ",\n");
+      writer.write(
+          "  \"nullawayShare\": "
+              + String.format(
+                  Locale.ROOT, "%.4f", totalNanos == 0 ? 0.0 : (double) nullawayNanos / totalNanos)
+              + ",\n");
+      writer.write("  \"compilationUnits\": [");
+      for (int i = 0; i < compilationUnits.size(); i++) {
+        Map.Entry<String, Long> compilationUnit = compilationUnits.get(i);
+        List<String> classes = new ArrayList<>();
+        for (String className : classesByPath.get(compilationUnit.getKey())) {
+          classes.add(jsonString(className));
+        }
+        writer.write(i == 0 ? "\n" : ",\n");
+        writer.write(
+            "    {\"path\": "
+                + jsonString(compilationUnit.getKey())
+                + ", \"classes\": ["
+                + String.join(", ", classes)
+                + "], \"nullawayMillis\": "
+                + millis(compilationUnit.getValue())
+                + "}");
+      }
+      writer.write(compilationUnits.isEmpty() ? "]\n" : "\n  ]\n");
+      writer.write("}\n");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+  }
+
+  static String jsonString(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -0,0 +1,419 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The findings of previous {@link NullAwayCheck} executions, for each source file, along with the
+ * key they were computed for.
+ *
+ * <p>The key of a source file hashes the analysis configuration, the content of the source file,
+ * and the class files of all the types it depends on: those referenced by the classes compiled
+ * from the source file, their supertypes (transitively), their enclosing classes, and their
+ * packages' {@code package-info} classes. A change to any of them, such as a nullness annotation on
+ * a method of another class or project, thus invalidates the cached findings.
+ *
+ * <p>The cache is stored as a text file: for each source file, a line with the key and the path of
+ * the source file separated by a tab, followed by one line per finding, each prefixed with a tab.
+ */
+final class NullAwayResultCache {
+  private static final String MISSING = "-";
+
+  // Hashes of classpath files, kept for as long as the plugin is loaded as they rarely change, but
+  // only the most recently used ones so a long-lived daemon doesn't accumulate them indefinitely
+  private static final int MAX_FILE_HASHES = 10_000;
+  private static final Map<File, FileHash> FILE_HASHES = synchronizedMap(new FileHashes());
+
+  static final class Entry {
+    private final String key;
+    private final List<String> findings;
+
+    Entry(String key, List<String> findings) {
+      this.key = key;
+      this.findings = unmodifiableList(findings);
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    List<String> getFindings() {
+      return findings;
+    }
+  }
+
+  private NullAwayResultCache() {}
+
+  static Map<String, Entry> read(File cacheFile) {
+    Map<String, Entry> entries = new TreeMap<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+      @Nullable String path = null;
+      @Nullable String key = null;
+      List<String> findings = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("\t")) {
+          findings.add(line.substring(1));
+          continue;
+        }
+        if (path != null && key != null) {
+          entries.put(path, new Entry(key, findings));
+        }
+        String[] parts = line.split("\t", 2);
+        key = parts[0];
+        path = parts.length == 2 ? parts[1] : null;
+        findings = new ArrayList<>();
+      }
+      if (path != null && key != null) {
+        entries.put(path, new Entry(key, findings));
+      }
+    } catch (NoSuchFileException e) {
+      // No cache yet
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return entries;
+  }
+
+  static void write(File cacheFile, Map<String, Entry> entries) {
+    try {
+      Files.createDirectories(cacheFile.toPath().getParent());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        writer.write(entry.getValue().getKey());
+        writer.write('\t');
+        writer.write(entry.getKey());
+        writer.write('\n');
+        for (String finding : entry.getValue().getFindings()) {
+          writer.write('\t');
+          writer.write(finding);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Computes the keys of the given source files, keyed by their path in the report.
+   *
+   * <p>Source files that don't have any corresponding class in {@code classesDir} have no key, and
+   * are never cached.
+   *
+   * @param configuration the analysis configuration (options, tools versions), hashed into each key
+   * @param sources the source files, keyed by their path in the report
+   * @param classesDir the directory containing the classes compiled from the sources
+   * @param classpath the classpath used for the analysis, including {@code classesDir}
+   */
+  static Map<String, String> computeKeys(
+      String configuration, Map<String, File> sources, File classesDir, Iterable<File> classpath) {
+    try (ClassPath classPath = new ClassPath(classpath)) {
+      Map<String, List<ClassFileInfo>> classesBySourcePath = new HashMap<>();
+      for (ClassFileInfo info : listClasses(classesDir)) {
+        String sourceFile = info.getSourceFile();
+        if (sourceFile != null) {
+          int lastSlash = info.getName().lastIndexOf('/');
+          String sourcePath = info.getName().substring(0, lastSlash + 1) + sourceFile;
+          classesBySourcePath.computeIfAbsent(sourcePath, k -> new ArrayList<>()).add(info);
+        }
+      }
+
+      String configurationHash = hash(configuration.getBytes(StandardCharsets.UTF_8));
+      Map<String, String> keys = new TreeMap<>();
+      for (Map.Entry<String, File> source : sources.entrySet()) {
+        List<ClassFileInfo> classes = findClasses(classesBySourcePath, source.getValue());
+        if (classes == null) {
+          continue;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(configurationHash).append('\n');
+        key.append(hash(Files.readAllBytes(source.getValue().toPath()))).append('\n');
+        for (String dependency : dependencies(classPath, classes)) {
+          key.append(dependency).append('=').append(classPath.hash(dependency)).append('\n');
+        }
+        keys.put(source.getKey(), hash(key.toString().getBytes(StandardCharsets.UTF_8)));
+      }
+      return keys;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static List<ClassFileInfo> listClasses(File classesDir) throws IOException {
+    List<ClassFileInfo> classes = new ArrayList<>();
+    Deque<File> directories = new ArrayDeque<>();
+    directories.add(classesDir);
+    while (!directories.isEmpty()) {
+      File[] files = directories.remove().listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        if (file.isDirectory()) {
+          directories.add(file);
+        } else if (file.getName().endsWith(".class")) {
+          classes.add(ClassFileInfo.parse(Files.readAllBytes(file.toPath())));
+        }
+      }
+    }
+    return classes;
+  }
+
+  /** Finds the classes compiled from the source file, matching the longest package path. */
+  private static @Nullable List<ClassFileInfo> findClasses(
+      Map<String, List<ClassFileInfo>> classesBySourcePath, File source) {
+    String path = source.getPath().replace(File.separatorChar, '/');
+    @Nullable List<ClassFileInfo> classes = null;
+    for (int i = path.lastIndexOf('/'); i >= 0; i = path.lastIndexOf('/', i - 1)) {
+      List<ClassFileInfo> candidates = classesBySourcePath.get(path.substring(i + 1));
+      if (candidates != null) {
+        classes = candidates;
+      }
+    }
+    return classes;
+  }
+
+  private static Set<String> dependencies(ClassPath classPath, List<ClassFileInfo> classes)
+      throws IOException {
+    Set<String> dependencies = new TreeSet<>();
+    Deque<String> queue = new ArrayDeque<>();
+    for (ClassFileInfo info : classes) {
+      // The class files of the source file itself are only hashed for their dependencies: the
+      // source content is already part of the key
+      addDependencies(info, queue);
+      queue.addAll(info.getReferencedTypes());
+    }
+    // A module-level @NullMarked applies to every class
+    queue.add("module-info");
+    while (!queue.isEmpty()) {
+      String name = queue.remove();
+      if (!dependencies.add(name)) {
+        continue;
+      }
+      ClassFileInfo info = classPath.info(name);
+      if (info != null) {
+        addDependencies(info, queue);
+      }
+    }
+    for (ClassFileInfo info : classes) {
+      dependencies.remove(info.getName());
+    }
+    return dependencies;
+  }
+
+  /** Adds the supertypes, enclosing classes, and package-info of the class to the queue. */
+  private static void addDependencies(ClassFileInfo info, Deque<String> queue) {
+    String name = info.getName();
+    if (info.getSuperName() != null) {
+      queue.add(info.getSuperName());
+    }
+    queue.addAll(info.getInterfaces());
+    for (int i = name.lastIndexOf('$'); i > 0; i = name.lastIndexOf('$', i - 1)) {
+      queue.add(name.substring(0, i));
+    }
+    int lastSlash = name.lastIndexOf('/');
+    if (!name.endsWith("/package-info")) {
+      queue.add(name.substring(0, lastSlash + 1) + "package-info");
+    }
+  }
+
+  static String hash(byte[] bytes) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest(bytes)) {
+      sb.append(String.format("%02x", b & 0xFF));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Hashes a classpath entry: the content of a file, or the paths and contents of the files of a
+   * directory, recursively.
+   *
+   * <p>The hash of each file is memoized until its size or last modification time changes.
+   */
+  static String hashClasspathEntry(File entry) throws IOException {
+    if (!entry.isDirectory()) {
+      return entry.isFile() ? hashFile(entry) : MISSING;
+    }
+    Map<String, File> files = new TreeMap<>();
+    Deque<File> directories = new ArrayDeque<>();
+    directories.add(entry);
+    while (!directories.isEmpty()) {
+      File[] children = directories.remove().listFiles();
+      if (children == null) {
+        continue;
+      }
+      for (File child : children) {
+        if (child.isDirectory()) {
+          directories.add(child);
+        } else {
+          String path = entry.toPath().relativize(child.toPath()).toString();
+          files.put(path.replace(File.separatorChar, '/'), child);
+        }
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, File> file : files.entrySet()) {
+      sb.append(file.getKey()).append('=').append(hashFile(file.getValue())).append('\n');
+    }
+    return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String hashFile(File file) throws IOException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    @Nullable FileHash cached = FILE_HASHES.get(file);
+    if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+      return cached.hash;
+    }
+    String hash = hash(Files.readAllBytes(file.toPath()));
+    FILE_HASHES.put(file, new FileHash(length, lastModified, hash));
+    return hash;
+  }
+
+  /** Least recently used file hashes, evicted beyond {@link #MAX_FILE_HASHES}. */
+  private static final class FileHashes extends LinkedHashMap<File, FileHash> {
+    private static final long serialVersionUID = 1L;
+
+    FileHashes() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<File, FileHash> eldest) {
+      return size() > MAX_FILE_HASHES;
+    }
+  }
+
+  private static final class FileHash {
+    final long length;
+    final long lastModified;
+    final String hash;
+
+    FileHash(long length, long lastModified, String hash) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  /** Looks up class files in a classpath, memoizing their hash and parsed info. */
+  private static final class ClassPath implements Closeable {
+    // Either a directory or a JAR, in classpath order
+    private final List<Object> entries = new ArrayList<>();
+    private final Map<String, String> hashes = new HashMap<>();
+    private final Map<String, @Nullable ClassFileInfo> infos = new HashMap<>();
+
+    ClassPath(Iterable<File> classpath) throws IOException {
+      try {
+        for (File entry : classpath) {
+          if (entry.isDirectory()) {
+            entries.add(entry);
+          } else if (entry.isFile()) {
+            entries.add(new ZipFile(entry));
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    String hash(String name) throws IOException {
+      @Nullable String hash = hashes.get(name);
+      if (hash == null) {
+        byte[] bytes = read(name);
+        hash = bytes == null ? MISSING : NullAwayResultCache.hash(bytes);
+        hashes.put(name, hash);
+      }
+      return hash;
+    }
+
+    @Nullable ClassFileInfo info(String name) throws IOException {
+      if (!infos.containsKey(name)) {
+        byte[] bytes = read(name);
+        infos.put(name, bytes == null ? null : ClassFileInfo.parse(bytes));
+      }
+      return infos.get(name);
+    }
+
+    private byte @Nullable [] read(String name) throws IOException {
+      String path = name + ".class";
+      for (Object entry : entries) {
+        if (entry instanceof File) {
+          File file = new File((File) entry, path);
+          if (file.isFile()) {
+            return Files.readAllBytes(file.toPath());
+          }
+        } else {
+          ZipFile jar = (ZipFile) entry;
+          ZipEntry zipEntry = jar.getEntry(path);
+          if (zipEntry != null) {
+            try (InputStream in = jar.getInputStream(zipEntry)) {
+              return readAllBytes(in, zipEntry.getSize());
+            }
+          }
+        }
+      }
+      return null;
+    }
+
+    private static byte[] readAllBytes(InputStream in, long size) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Object entry : entries) {
+        if (entry instanceof ZipFile) {
+          ((ZipFile) entry).close();
+        }
+      }
+    }
+  }
+}
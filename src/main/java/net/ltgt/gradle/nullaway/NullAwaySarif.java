@@ -0,0 +1,184 @@
+package net.ltgt.gradle.nullaway;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.GradleException;
+
+/**
+ * Writes findings, as written in the {@link NullAwayCheck#getReportFile() report file}, to a <a
+ * href="https://docs.oasis-open.org/sarif/sarif/v2.1.0/sarif-v2.1.0.html">SARIF</a> log, and
+ * merges such logs.
+ *
+ * <p>Logs are written with a fixed layout: the {@code runs} array opens and closes on lines of
+ * their own, and each result is written on a single line. This allows merging logs, and counting
+ * results, line by line without parsing them. Source files are referenced relative to the {@code
+ * %SRCROOT%} base URI, the root directory of the build, so logs of all projects can be merged.
+ */
+final class NullAwaySarif {
+  private static final String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+  private static final String RUNS_START = "  \"runs\": [";
+  private static final String RUNS_END = "  ]";
+
+  private static final Pattern RULE = Pattern.compile("^\\[(\\w+)\\] ");
+  private static final String JAVAC_RULE = "javac";
+
+  private NullAwaySarif() {}
+
+  /**
+   * Writes a log with a single run, reporting the given findings.
+   *
+   * @param automationId identifies the run, e.g. the path of the task
+   * @param pathPrefix the path of the project directory relative to the root directory of the
+   *     build, ending with a slash unless empty
+   */
+  static void write(
+      File sarifFile, String automationId, String pathPrefix, Iterable<String> findings) {
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(sarifFile.toPath(), StandardCharsets.UTF_8)) {
+      writeHeader(writer);
+      writer.write("    {\n");
+      writer.write(
+          "      \"tool\": {\"driver\": {\"name\": \"NullAway\","
+              + " \"informationUri\": \"https://github.com/uber/NullAway\"}},\n");
+      writer.write(
+          "      \"automationDetails\": {\"id\": "
+              + NullAwayProfiler.jsonString(automationId)
+              + "},\n");
+      writer.write("      \"results\": [");
+      boolean first = true;
+      for (String finding : findings) {
+        writer.write(first ? "\n" : ",\n");
+        writer.write("        ");
+        writer.write(result(finding, pathPrefix));
+        first = false;
+      }
+      writer.write(first ? "]\n" : "\n      ]\n");
+      writer.write("    }\n");
+      writeFooter(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the JSON representation of a finding as a SARIF result. */
+  static String result(String finding, String pathPrefix) {
+    Matcher location = NullAwayCheckAction.LOCATION.matcher(finding);
+    boolean hasLocation = location.find();
+    // The kind and message follow the line and column, if any
+    String kindAndMessage = hasLocation ? finding.substring(location.end(3) + 2) : finding;
+    int colon = kindAndMessage.indexOf(": ");
+    String level = kindAndMessage.substring(0, colon);
+    String message = kindAndMessage.substring(colon + 2);
+    Matcher rule = RULE.matcher(message);
+    StringBuilder sb = new StringBuilder("{\"ruleId\": ");
+    sb.append(NullAwayProfiler.jsonString(rule.find() ? rule.group(1) : JAVAC_RULE));
+    sb.append(", \"level\": ").append(NullAwayProfiler.jsonString(level));
+    sb.append(", \"message\": {\"text\": ").append(NullAwayProfiler.jsonString(message));
+    sb.append("}");
+    if (hasLocation) {
+      sb.append(", \"locations\": [{\"physicalLocation\": {\"artifactLocation\": ");
+      sb.append(artifactLocation(location.group(1), pathPrefix));
+      sb.append(", \"region\": {\"startLine\": ").append(location.group(2));
+      sb.append(", \"startColumn\": ").append(location.group(3));
+      sb.append("}}}]");
+    }
+    return sb.append("}").toString();
+  }
+
+  private static String artifactLocation(String path, String pathPrefix) {
+    try {
+      File file = new File(path);
+      if (file.isAbsolute()) {
+        return "{\"uri\": " + NullAwayProfiler.jsonString(file.toURI().toString()) + "}";
+      }
+      String uri = new URI(null, null, pathPrefix + path, null).toASCIIString();
+      return "{\"uri\": " + NullAwayProfiler.jsonString(uri) + ", \"uriBaseId\": \"%SRCROOT%\"}";
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * Copies the runs of a log written by {@link #write}, to be merged with others by {@link
+   * #merge}.
+   */
+  static void extractRuns(File sarifFile, File runsFile) {
+    try (BufferedReader reader =
+            Files.newBufferedReader(sarifFile.toPath(), StandardCharsets.UTF_8);
+        BufferedWriter writer =
+            Files.newBufferedWriter(runsFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      boolean inRuns = false;
+      boolean complete = false;
+      while ((line = reader.readLine()) != null) {
+        if (!inRuns) {
+          inRuns = line.equals(RUNS_START);
+        } else if (line.equals(RUNS_END)) {
+          complete = true;
+          break;
+        } else {
+          writer.write(line);
+          writer.write('\n');
+        }
+      }
+      if (!complete) {
+        throw new GradleException("Unexpected layout of SARIF log " + sarifFile);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Writes a log with the runs extracted by {@link #extractRuns}, in order. */
+  static void merge(File sarifFile, List<File> runsFiles) {
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(sarifFile.toPath(), StandardCharsets.UTF_8)) {
+      writeHeader(writer);
+      boolean empty = true;
+      for (File runsFile : runsFiles) {
+        try (BufferedReader reader =
+            Files.newBufferedReader(runsFile.toPath(), StandardCharsets.UTF_8)) {
+          boolean firstLine = true;
+          String line;
+          while ((line = reader.readLine()) != null) {
+            if (!empty) {
+              writer.write(firstLine ? ",\n" : "\n");
+            }
+            writer.write(line);
+            empty = false;
+            firstLine = false;
+          }
+        }
+      }
+      if (!empty) {
+        writer.write('\n');
+      }
+      writeFooter(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeHeader(Writer writer) throws IOException {
+    writer.write("{\n");
+    writer.write("  \"$schema\": \"" + SCHEMA + "\",\n");
+    writer.write("  \"version\": \"2.1.0\",\n");
+    writer.write(RUNS_START + "\n");
+  }
+
+  private static void writeFooter(Writer writer) throws IOException {
+    writer.write(RUNS_END + "\n");
+    writer.write("}\n");
+  }
+}
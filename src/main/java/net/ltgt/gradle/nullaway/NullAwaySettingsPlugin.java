@@ -0,0 +1,30 @@
+package net.ltgt.gradle.nullaway;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.Settings;
+import org.gradle.util.GradleVersion;
+
+/**
+ * Configures build-wide defaults for NullAway options, used as conventions by all projects that
+ * apply the {@link NullAwayPlugin net.ltgt.nullaway} plugin.
+ */
+public abstract class NullAwaySettingsPlugin implements Plugin<Settings> {
+  static final String PLUGIN_ID = "net.ltgt.nullaway.settings";
+
+  @Override
+  public void apply(Settings settings) {
+    if (GradleVersion.current().compareTo(GradleVersion.version("6.8")) < 0) {
+      throw new UnsupportedOperationException(PLUGIN_ID + " requires at least Gradle 6.8");
+    }
+
+    NullAwayOptions options =
+        settings
+            .getGradle()
+            .getSharedServices()
+            .registerIfAbsent(
+                NullAwayBuildDefaults.SERVICE_NAME, NullAwayBuildDefaults.class, spec -> {})
+            .get()
+            .getOptions();
+    settings.getExtensions().add(NullAwayOptions.class, NullAwayPlugin.EXTENSION_NAME, options);
+  }
+}
@@ -0,0 +1,44 @@
+package net.ltgt.gradle.nullaway;
+
+import javax.inject.Inject;
+import org.gradle.api.Named;
+
+/**
+ * NullAway options for a given source set, used as conventions for its {@code JavaCompile} task.
+ *
+ * <p>Defaults to the values configured at the project-level. Test source sets default to {@link
+ * #getHandleTestAssertionLibraries() handleTestAssertionLibraries} without the {@link
+ * #getJspecifyMode() JSpecify mode}, whatever the project-level values, unless configured on their
+ * own options.
+ *
+ * @see NullAwayExtension#getSourceSets()
+ */
+public abstract class NullAwaySourceSetOptions extends NullAwayOptions implements Named {
+  private final String name;
+
+  @Inject
+  public NullAwaySourceSetOptions(String name, NullAwayExtension nullawayExtension) {
+    super(nullawayExtension);
+    this.name = name;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Whether the source set with the given name contains tests: {@code test}, {@code testFixtures},
+   * or any source set whose name ends with {@code Test} (like JVM test suites such as {@code
+   * integrationTest}).
+   */
+  static boolean isTestSourceSet(String name) {
+    return name.equals("test") || name.equals("testFixtures") || name.endsWith("Test");
+  }
+
+  /** Lighter conventions for test source sets, replacing the project-level values. */
+  void testConventions() {
+    presetOptionConvention(getHandleTestAssertionLibraries(), true);
+    presetOptionConvention(getJspecifyMode(), false);
+  }
+}
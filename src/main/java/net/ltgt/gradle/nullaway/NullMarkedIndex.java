@@ -0,0 +1,251 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The {@code @NullMarked} and {@code @NullUnmarked} packages and modules of a source set, as
+ * computed by {@link IndexNullMarkedPackages}, or the packages of a library, as computed by {@link
+ * IndexNullMarkedJar}.
+ *
+ * <p>The index is stored as a text file with one tab-separated line per annotated {@code
+ * package-info.java} or {@code module-info.java}: the kind of declaration ({@code package} or
+ * {@code module}), the annotation ({@code NullMarked} or {@code NullUnmarked}), the package or
+ * module name, and the relative path of the source file. Lines are sorted by path so the file
+ * doesn't depend on the order files were scanned.
+ */
+final class NullMarkedIndex {
+  static final String NULL_MARKED = "NullMarked";
+  static final String NULL_UNMARKED = "NullUnmarked";
+
+  private static final String MODULE = "module";
+
+  private static final Pattern COMMENT = Pattern.compile("//[^\r\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+  private static final Pattern DECLARATION =
+      Pattern.compile("\\b(package|module)\\s+([\\w$]+(?:\\s*\\.\\s*[\\w$]+)*)");
+  private static final Pattern ANNOTATION =
+      Pattern.compile("@\\s*((?:[\\w$]+\\s*\\.\\s*)*)(NullMarked|NullUnmarked)\\b");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final String JSPECIFY_PACKAGE = "org.jspecify.annotations.";
+  private static final String JSPECIFY_INTERNAL_PACKAGE = "org/jspecify/annotations/";
+  private static final String PACKAGE_INFO_CLASS = "package-info.class";
+  private static final String MODULE_INFO_CLASS = "module-info.class";
+  private static final Pattern MULTI_RELEASE_PREFIX = Pattern.compile("^META-INF/versions/\\d+/");
+
+  private final List<String> nullMarkedPackages;
+  private final List<String> nullUnmarkedPackages;
+  private final boolean moduleNullMarked;
+
+  private NullMarkedIndex(
+      List<String> nullMarkedPackages,
+      List<String> nullUnmarkedPackages,
+      boolean moduleNullMarked) {
+    this.nullMarkedPackages = unmodifiableList(nullMarkedPackages);
+    this.nullUnmarkedPackages = unmodifiableList(nullUnmarkedPackages);
+    this.moduleNullMarked = moduleNullMarked;
+  }
+
+  List<String> getNullMarkedPackages() {
+    return nullMarkedPackages;
+  }
+
+  List<String> getNullUnmarkedPackages() {
+    return nullUnmarkedPackages;
+  }
+
+  boolean isModuleNullMarked() {
+    return moduleNullMarked;
+  }
+
+  static NullMarkedIndex read(File indexFile) {
+    List<String> nullMarkedPackages = new ArrayList<>();
+    List<String> nullUnmarkedPackages = new ArrayList<>();
+    boolean moduleNullMarked = false;
+    for (String[] entry : readEntries(indexFile).values()) {
+      if (entry[0].equals(MODULE)) {
+        moduleNullMarked |= entry[1].equals(NULL_MARKED);
+      } else if (entry[1].equals(NULL_MARKED)) {
+        nullMarkedPackages.add(entry[2]);
+      } else {
+        nullUnmarkedPackages.add(entry[2]);
+      }
+    }
+    return new NullMarkedIndex(nullMarkedPackages, nullUnmarkedPackages, moduleNullMarked);
+  }
+
+  /** Reads the index entries, keyed by source file path. */
+  static Map<String, String[]> readEntries(File indexFile) {
+    Map<String, String[]> entries = new TreeMap<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split("\t", 4);
+        if (entry.length == 4) {
+          entries.put(entry[3], entry);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return entries;
+  }
+
+  static void writeEntries(File indexFile, Map<String, String[]> entries) {
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+      for (String[] entry : entries.values()) {
+        writer.write(String.join("\t", entry));
+        writer.write('\n');
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Scans the given {@code package-info.java} or {@code module-info.java} file, returning its index
+   * entry, or {@code null} if the declaration has neither a {@code NullMarked} nor a {@code
+   * NullUnmarked} JSpecify annotation.
+   */
+  static String @Nullable [] scan(File sourceFile, String path) {
+    String source;
+    try {
+      source = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    source = COMMENT.matcher(source).replaceAll(" ");
+    Matcher declaration = DECLARATION.matcher(source);
+    if (!declaration.find()) {
+      return null;
+    }
+    // Annotations come right before the declaration (and after imports in module-info.java)
+    Matcher annotation = ANNOTATION.matcher(source).region(0, declaration.start());
+    while (annotation.find()) {
+      String qualifier = WHITESPACE.matcher(annotation.group(1)).replaceAll("");
+      String name = annotation.group(2);
+      if (qualifier.equals(JSPECIFY_PACKAGE)
+          || (qualifier.isEmpty() && importsJSpecifyAnnotation(source, name))) {
+        return new String[] {
+          declaration.group(1),
+          name,
+          WHITESPACE.matcher(declaration.group(2)).replaceAll(""),
+          path
+        };
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Scans the {@code package-info} and {@code module-info} classes of the given JAR, returning its
+   * index entries, keyed by path.
+   *
+   * <p>If the module is {@code @NullMarked}, all the packages of the JAR that aren't themselves
+   * annotated are listed as {@code @NullMarked}. The module itself isn't listed: it only applies to
+   * the packages of the JAR. Like those of the sources, listed packages don't cover their
+   * subpackages, which are listed on their own if they're annotated.
+   */
+  static Map<String, String[]> scanJar(File jar) {
+    Map<String, String[]> entries = new TreeMap<>();
+    Set<String> packages = new TreeSet<>();
+    boolean moduleNullMarked = false;
+    try (ZipFile zip = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        String path = MULTI_RELEASE_PREFIX.matcher(zipEntry.getName()).replaceFirst("");
+        if (!path.endsWith(".class") || path.startsWith("META-INF/")) {
+          continue;
+        }
+        int lastSlash = path.lastIndexOf('/');
+        String packageName = path.substring(0, Math.max(lastSlash, 0)).replace('/', '.');
+        String fileName = path.substring(lastSlash + 1);
+        if (fileName.equals(PACKAGE_INFO_CLASS) || fileName.equals(MODULE_INFO_CLASS)) {
+          @Nullable String annotation;
+          try (InputStream in = zip.getInputStream(zipEntry)) {
+            annotation = jspecifyAnnotation(ClassFileInfo.parse(readAllBytes(in)));
+          }
+          if (annotation == null) {
+            continue;
+          }
+          if (fileName.equals(MODULE_INFO_CLASS)) {
+            moduleNullMarked |= annotation.equals(NULL_MARKED);
+          } else {
+            entries.put(path, new String[] {"package", annotation, packageName, path});
+          }
+        } else if (!packageName.isEmpty()) {
+          packages.add(packageName);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (moduleNullMarked) {
+      Set<String> annotatedPackages = new TreeSet<>();
+      for (String[] entry : entries.values()) {
+        annotatedPackages.add(entry[2]);
+      }
+      for (String packageName : packages) {
+        if (!annotatedPackages.contains(packageName)) {
+          String path = packageName.replace('.', '/') + '/';
+          entries.put(path, new String[] {"package", NULL_MARKED, packageName, path});
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static @Nullable String jspecifyAnnotation(ClassFileInfo info) {
+    for (String annotation : info.getAnnotations()) {
+      if (annotation.equals(JSPECIFY_INTERNAL_PACKAGE + NULL_MARKED)) {
+        return NULL_MARKED;
+      }
+      if (annotation.equals(JSPECIFY_INTERNAL_PACKAGE + NULL_UNMARKED)) {
+        return NULL_UNMARKED;
+      }
+    }
+    return null;
+  }
+
+  private static byte[] readAllBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static boolean importsJSpecifyAnnotation(String source, String name) {
+    return Pattern.compile(
+            "\\bimport\\s+org\\s*\\.\\s*jspecify\\s*\\.\\s*annotations\\s*\\.\\s*(?:\\*|"
+                + name
+                + ")\\s*;")
+        .matcher(source)
+        .find();
+  }
+}
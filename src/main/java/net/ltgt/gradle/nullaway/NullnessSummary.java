@@ -0,0 +1,157 @@
+package net.ltgt.gradle.nullaway;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The nullness configuration a project shares with the projects depending on it, as computed by
+ * {@link GenerateNullnessSummary}: its annotated and unannotated packages, and known initializers.
+ *
+ * <p>Excluded classes aren't shared: NullAway only uses them to skip checking those classes, which
+ * only happens when compiling the project they belong to.
+ *
+ * <p>The summary is stored as a text file with one tab-separated line per entry: the kind of entry
+ * ({@code annotatedPackage}, {@code unannotatedSubPackage}, or {@code knownInitializer}) and its
+ * value. Lines are sorted so the file only changes when the summary does. Packages are listed
+ * individually, and don't cover their subpackages.
+ */
+final class NullnessSummary {
+  private static final String ANNOTATED_PACKAGE = "annotatedPackage";
+  private static final String UNANNOTATED_SUB_PACKAGE = "unannotatedSubPackage";
+  private static final String KNOWN_INITIALIZER = "knownInitializer";
+
+  private final List<String> annotatedPackages;
+  private final List<String> unannotatedSubPackages;
+  private final List<String> knownInitializers;
+
+  NullnessSummary(
+      List<String> annotatedPackages,
+      List<String> unannotatedSubPackages,
+      List<String> knownInitializers) {
+    this.annotatedPackages = unmodifiableList(annotatedPackages);
+    this.unannotatedSubPackages = unmodifiableList(unannotatedSubPackages);
+    this.knownInitializers = unmodifiableList(knownInitializers);
+  }
+
+  List<String> getAnnotatedPackages() {
+    return annotatedPackages;
+  }
+
+  List<String> getUnannotatedSubPackages() {
+    return unannotatedSubPackages;
+  }
+
+  List<String> getKnownInitializers() {
+    return knownInitializers;
+  }
+
+  /**
+   * Returns the packages, among the given ones, that are covered by the annotated packages but not
+   * by the unannotated subpackages, as NullAway would match them.
+   */
+  static List<String> annotatedPackages(
+      Collection<String> packages, List<String> annotated, List<String> unannotated) {
+    List<String> result = new ArrayList<>();
+    if (annotated.isEmpty()) {
+      return result;
+    }
+    Pattern annotatedPattern = PackagePrefixTrie.toPattern(annotated);
+    @Nullable Pattern unannotatedPattern =
+        unannotated.isEmpty() ? null : PackagePrefixTrie.toPattern(unannotated);
+    for (String packageName : new TreeSet<>(packages)) {
+      if (PackagePrefixTrie.matchesClassesOf(annotatedPattern, packageName)
+          && (unannotatedPattern == null
+              || !PackagePrefixTrie.matchesClassesOf(unannotatedPattern, packageName))) {
+        result.add(packageName);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the packages, among the given ones, that are covered by the unannotated subpackages, as
+   * NullAway would match them, so projects depending on them don't treat them as annotated.
+   */
+  static List<String> unannotatedSubPackages(
+      Collection<String> packages, List<String> unannotated) {
+    List<String> result = new ArrayList<>();
+    if (unannotated.isEmpty()) {
+      return result;
+    }
+    Pattern unannotatedPattern = PackagePrefixTrie.toPattern(unannotated);
+    for (String packageName : new TreeSet<>(packages)) {
+      if (PackagePrefixTrie.matchesClassesOf(unannotatedPattern, packageName)) {
+        result.add(packageName);
+      }
+    }
+    return result;
+  }
+
+  static NullnessSummary read(File summaryFile) {
+    List<String> annotatedPackages = new ArrayList<>();
+    List<String> unannotatedSubPackages = new ArrayList<>();
+    List<String> knownInitializers = new ArrayList<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split("\t", 2);
+        if (entry.length != 2) {
+          continue;
+        }
+        switch (entry[0]) {
+          case ANNOTATED_PACKAGE:
+            annotatedPackages.add(entry[1]);
+            break;
+          case UNANNOTATED_SUB_PACKAGE:
+            unannotatedSubPackages.add(entry[1]);
+            break;
+          case KNOWN_INITIALIZER:
+            knownInitializers.add(entry[1]);
+            break;
+          default:
+            // Ignore unknown entries, possibly written by a newer version of the plugin
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new NullnessSummary(annotatedPackages, unannotatedSubPackages, knownInitializers);
+  }
+
+  void write(File summaryFile) {
+    Set<String> lines = new TreeSet<>();
+    for (String annotatedPackage : annotatedPackages) {
+      lines.add(ANNOTATED_PACKAGE + "\t" + annotatedPackage);
+    }
+    for (String unannotatedSubPackage : unannotatedSubPackages) {
+      lines.add(UNANNOTATED_SUB_PACKAGE + "\t" + unannotatedSubPackage);
+    }
+    for (String knownInitializer : knownInitializers) {
+      lines.add(KNOWN_INITIALIZER + "\t" + knownInitializer);
+    }
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+      for (String line : lines) {
+        writer.write(line);
+        writer.write('\n');
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
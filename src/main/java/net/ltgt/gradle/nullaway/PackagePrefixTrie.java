@@ -0,0 +1,153 @@
+package net.ltgt.gradle.nullaway;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A trie of package names, split on dots, used to minimize the {@code AnnotatedPackages} and
+ * {@code UnannotatedSubPackages} lists.
+ *
+ * <p>NullAway turns those lists into a {@code ^(?:p1|p2)(?:\..*)?} regex (with dots escaped), so an
+ * entry matches the package itself and all its subpackages, and any entry that's a subpackage of
+ * another entry is redundant. Because the entries are actually regexes, those containing regex
+ * metacharacters (other than dots) are kept as-is and never considered as covering another entry.
+ * The only exception is {@link #exactEntry exact entries}, which are redundant when another entry
+ * covers their package.
+ *
+ * <p>NullAway matches the regex against the names of top-level classes, not packages.
+ */
+final class PackagePrefixTrie {
+  private static final String REGEX_METACHARACTERS = "\\^$|?*+()[]{}";
+  private static final String EXACT_SUFFIX = ".[^.]+$";
+
+  /**
+   * Returns an entry matching the classes of the given package but not those of its subpackages,
+   * as JSpecify's {@code @NullMarked} and {@code @NullUnmarked} annotations on a package don't
+   * apply to its subpackages.
+   */
+  static String exactEntry(String packageName) {
+    return packageName + EXACT_SUFFIX;
+  }
+
+  /** Returns the {@link #exactEntry exact entries} of the given packages. */
+  static List<String> exactEntries(Collection<String> packageNames) {
+    List<String> result = new ArrayList<>(packageNames.size());
+    for (String packageName : packageNames) {
+      result.add(exactEntry(packageName));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the entries from {@code packageNames} that aren't covered by another entry, in their
+   * original order, and reports each removed entry to {@code onRemoved}.
+   */
+  static List<String> minimize(List<String> packageNames, Consumer<String> onRemoved) {
+    PackagePrefixTrie trie = new PackagePrefixTrie();
+    for (String packageName : packageNames) {
+      if (!isOpaque(packageName)) {
+        trie.add(packageName);
+      }
+    }
+    List<String> result = new ArrayList<>(packageNames.size());
+    Set<String> seen = new HashSet<>();
+    for (String packageName : packageNames) {
+      if (seen.add(packageName) && !trie.covers(packageName)) {
+        result.add(packageName);
+      } else {
+        onRemoved.accept(packageName);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the regex NullAway builds from the given list, matching classes it covers. */
+  static Pattern toPattern(List<String> packageNames) {
+    StringBuilder regex = new StringBuilder("^(?:");
+    for (int i = 0; i < packageNames.size(); i++) {
+      regex.append(i == 0 ? "" : "|").append(packageNames.get(i).replace(".", "\\."));
+    }
+    return Pattern.compile(regex.append(")(?:\\..*)?").toString());
+  }
+
+  /** Returns whether the regex from {@link #toPattern} matches the classes of the package. */
+  static boolean matchesClassesOf(Pattern pattern, String packageName) {
+    // Any class name will do, entries can't tell classes apart
+    return pattern.matcher(packageName.isEmpty() ? "C" : packageName + ".C").matches();
+  }
+
+  private static @Nullable String exactEntryPackage(String entry) {
+    if (!entry.endsWith(EXACT_SUFFIX)) {
+      return null;
+    }
+    String packageName = entry.substring(0, entry.length() - EXACT_SUFFIX.length());
+    return isOpaque(packageName) ? null : packageName;
+  }
+
+  private static boolean isOpaque(String packageName) {
+    if (packageName.isEmpty()) {
+      return true;
+    }
+    for (int i = 0; i < packageName.length(); i++) {
+      if (REGEX_METACHARACTERS.indexOf(packageName.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final Node root = new Node();
+
+  private PackagePrefixTrie() {}
+
+  private void add(String packageName) {
+    Node node = root;
+    for (String segment : segments(packageName)) {
+      node = node.children.computeIfAbsent(segment, k -> new Node());
+    }
+    node.terminal = true;
+  }
+
+  /** Returns whether another entry in the trie covers the given entry. */
+  private boolean covers(String entry) {
+    @Nullable String exactEntryPackage = exactEntryPackage(entry);
+    if (exactEntryPackage != null) {
+      return hasPrefixOf(exactEntryPackage, false);
+    }
+    return !isOpaque(entry) && hasPrefixOf(entry, true);
+  }
+
+  /** Returns whether a package in the trie is {@code packageName} or a parent package of it. */
+  private boolean hasPrefixOf(String packageName, boolean strict) {
+    String[] segments = segments(packageName);
+    Node node = root;
+    // When strict, the last segment is excluded: the package itself is not a strict prefix
+    for (int i = 0; i < segments.length - (strict ? 1 : 0); i++) {
+      node = node.children.get(segments[i]);
+      if (node == null) {
+        return false;
+      }
+      if (node.terminal) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String[] segments(String packageName) {
+    return packageName.split("\\.", -1);
+  }
+
+  private static final class Node {
+    final Map<String, Node> children = new HashMap<>();
+    boolean terminal;
+  }
+}
@@ -2,6 +2,7 @@ package net.ltgt.gradle.nullaway
 
 import net.ltgt.gradle.errorprone.ErrorProneOptions
 import org.gradle.api.Action
+import org.gradle.api.initialization.Settings
 import org.gradle.api.plugins.ExtensionAware
 import org.gradle.kotlin.dsl.getByName
 
@@ -10,3 +11,9 @@ val ErrorProneOptions.nullaway
 
 fun ErrorProneOptions.nullaway(action: Action<in NullAwayOptions>) =
     (this as ExtensionAware).extensions.configure(NullAwayPlugin.EXTENSION_NAME, action)
+
+val Settings.nullaway
+    get() = extensions.getByName<NullAwayOptions>(NullAwayPlugin.EXTENSION_NAME)
+
+fun Settings.nullaway(action: Action<in NullAwayOptions>) =
+    extensions.configure(NullAwayPlugin.EXTENSION_NAME, action)
@@ -0,0 +1,31 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class CheckingTasksRequestedTest {
+  private static final Set<String> CHECKING_TASKS = Set.of("check", "build");
+
+  @Test
+  void matchesRequestedTasksByName() {
+    assertThat(CheckingTasksRequested.isRequested(List.of("check"), CHECKING_TASKS)).isTrue();
+    assertThat(CheckingTasksRequested.isRequested(List.of("clean", ":build"), CHECKING_TASKS))
+        .isTrue();
+    assertThat(CheckingTasksRequested.isRequested(List.of("lib:check"), CHECKING_TASKS)).isTrue();
+    assertThat(CheckingTasksRequested.isRequested(List.of(":app:sub:check"), CHECKING_TASKS))
+        .isTrue();
+  }
+
+  @Test
+  void ignoresOtherTasks() {
+    assertThat(CheckingTasksRequested.isRequested(List.of(), CHECKING_TASKS)).isFalse();
+    assertThat(CheckingTasksRequested.isRequested(List.of("run", ":installDist"), CHECKING_TASKS))
+        .isFalse();
+    assertThat(CheckingTasksRequested.isRequested(List.of("check:compileJava"), CHECKING_TASKS))
+        .isFalse();
+    assertThat(CheckingTasksRequested.isRequested(List.of("check"), Set.of())).isFalse();
+  }
+}
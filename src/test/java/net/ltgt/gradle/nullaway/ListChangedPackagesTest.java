@@ -0,0 +1,58 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class ListChangedPackagesTest {
+  private static final Set<String> CHANGED = Set.of("com.acme.billing", "com.acme.util");
+
+  @Test
+  void findsSourcesImportingChangedPackages() {
+    assertThat(
+            ListChangedPackages.dependentPackage(
+                """
+                package com.acme.ui;
+
+                import com.acme.billing.Bill;
+
+                class Ui {}
+                """,
+                CHANGED))
+        .isEqualTo("com.acme.ui");
+    assertThat(
+            ListChangedPackages.dependentPackage(
+                """
+                package com.acme.ui;
+                import java.util.List;
+                import static com.acme.util.Strings.Inner.format;
+                """,
+                CHANGED))
+        .isEqualTo("com.acme.ui");
+    assertThat(
+            ListChangedPackages.dependentPackage(
+                "package com.acme.ui;\nimport com.acme.billing.*;\n", CHANGED))
+        .isEqualTo("com.acme.ui");
+  }
+
+  @Test
+  void ignoresOtherImports() {
+    assertThat(
+            ListChangedPackages.dependentPackage(
+                """
+                package com.acme.ui;
+
+                // import com.acme.billing.Bill;
+                /* import com.acme.util.Strings; */
+                import com.acme.billing.impl.BillImpl;
+                import com.acme.Billing;
+
+                class Ui {}
+                """,
+                CHANGED))
+        .isNull();
+    assertThat(ListChangedPackages.dependentPackage("import com.acme.billing.Bill;\n", CHANGED))
+        .isNull();
+  }
+}
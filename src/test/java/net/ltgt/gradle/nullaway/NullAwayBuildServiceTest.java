@@ -0,0 +1,69 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullAwayBuildServiceTest {
+  @TempDir Path tempDir;
+
+  @Test
+  void summarizesSlowestTasksFirst() {
+    var lines =
+        NullAwayBuildService.summarize(
+            List.of(
+                new NullAwayBuildService.Record(":lib:compileJava", 250_000_000, 12, "none"),
+                new NullAwayBuildService.Record(":app:compileJava", 1_500_000_000, 40, "STRICT"),
+                new NullAwayBuildService.Record(":compileJava", 250_000_000, 3, "none")));
+
+    assertThat(lines)
+        .containsExactly(
+            "Compile tasks running NullAway: 3, with 55 source file(s), taking 2.000s of compile"
+                + " time (javac included)",
+            "  Task              Compile time  Sources  Preset",
+            "  :app:compileJava        1.500s       40  STRICT",
+            "  :compileJava            0.250s        3  none",
+            "  :lib:compileJava        0.250s       12  none")
+        .inOrder();
+  }
+
+  @Test
+  void summarizesNothingWithoutTasks() {
+    assertThat(NullAwayBuildService.summarize(List.of())).isEmpty();
+  }
+
+  @Test
+  void appendsToHistory() throws Exception {
+    var history = tempDir.resolve("reports/overhead-history.csv");
+    NullAwayBuildService.appendHistory(
+        history.toFile(),
+        Instant.parse("2024-01-02T03:04:05Z"),
+        false,
+        List.of(
+            new NullAwayBuildService.Record(":compileJava", 1_234_567_890, 10, "STRICT"),
+            new NullAwayBuildService.Record(":compileTestJava", 10_000_000, 2, "none")));
+    NullAwayBuildService.appendHistory(
+        history.toFile(),
+        Instant.parse("2024-01-02T03:14:05Z"),
+        true,
+        List.of(new NullAwayBuildService.Record(":compileJava", 5_000_000, 1, "STRICT")));
+    NullAwayBuildService.appendHistory(
+        history.toFile(),
+        Instant.parse("2024-01-02T03:24:05Z"),
+        null,
+        List.of(new NullAwayBuildService.Record(":compileJava", 5_000_000, 1, "STRICT")));
+
+    assertThat(Files.readAllLines(history))
+        .containsExactly(
+            "timestamp,result,tasks,files,millis,presets",
+            "2024-01-02T03:04:05Z,SUCCESS,2,12,1244,STRICT;none",
+            "2024-01-02T03:14:05Z,FAILED,1,1,5,STRICT",
+            "2024-01-02T03:24:05Z,UNKNOWN,1,1,5,STRICT")
+        .inOrder();
+  }
+}
@@ -0,0 +1,77 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+public class NullAwayCheckTest {
+  @Test
+  void partitionsByPackage() {
+    var sourcesByPackage = new TreeMap<String, List<File>>();
+    sourcesByPackage.put("a", sources("a", 5));
+    sourcesByPackage.put("b", sources("b", 3));
+    sourcesByPackage.put("c", sources("c", 2));
+    sourcesByPackage.put("d", sources("d", 2));
+    sourcesByPackage.put("e", sources("e", 1));
+
+    var shards = NullAwayCheck.partition(sourcesByPackage, 3);
+
+    assertThat(shards)
+        .containsExactly(
+            sources("a", 5),
+            concat(sources("b", 3), sources("e", 1)),
+            concat(sources("c", 2), sources("d", 2)))
+        .inOrder();
+  }
+
+  @Test
+  void partitionsIntoNoMoreShardsThanPackages() {
+    var sourcesByPackage = Map.of("a", sources("a", 2), "b", sources("b", 1));
+
+    assertThat(NullAwayCheck.partition(sourcesByPackage, 8)).hasSize(2);
+    assertThat(NullAwayCheck.partition(sourcesByPackage, 0)).hasSize(1);
+    assertThat(NullAwayCheck.partition(Map.of(), 8)).containsExactly(List.of());
+  }
+
+  @Test
+  void ordersFindingsByLocation() {
+    var findings =
+        new ArrayList<>(
+            List.of(
+                "src/main/java/test/B.java:2:1: warning: [NullAway] b",
+                "src/main/java/test/A.java:10:5: error: [NullAway] a",
+                "src/main/java/test/A.java:9:12: warning: [NullAway] a",
+                "error: warnings found and -Werror specified",
+                "src/main/java/test/A.java:10:5: error: [NullAway] 0"));
+
+    findings.sort(NullAwayCheckAction.FINDING_ORDER);
+
+    assertThat(findings)
+        .containsExactly(
+            "error: warnings found and -Werror specified",
+            "src/main/java/test/A.java:9:12: warning: [NullAway] a",
+            "src/main/java/test/A.java:10:5: error: [NullAway] 0",
+            "src/main/java/test/A.java:10:5: error: [NullAway] a",
+            "src/main/java/test/B.java:2:1: warning: [NullAway] b")
+        .inOrder();
+  }
+
+  private static List<File> sources(String packageName, int count) {
+    var sources = new ArrayList<File>();
+    for (int i = 0; i < count; i++) {
+      sources.add(new File(packageName, "Source" + i + ".java"));
+    }
+    return sources;
+  }
+
+  private static List<File> concat(List<File> first, List<File> second) {
+    var result = new ArrayList<>(first);
+    result.addAll(second);
+    return result;
+  }
+}
@@ -1,15 +1,20 @@
 package net.ltgt.gradle.nullaway;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.google.common.collect.Sets;
 import com.google.errorprone.ErrorProneOptions;
 import com.google.errorprone.ErrorProneOptions.Severity;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import net.ltgt.gradle.errorprone.CheckSeverity;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.Provider;
@@ -53,7 +58,8 @@ public class NullAwayOptionsTest {
           "NullAway:JSpecifyMode",
           "NullAway:ExtraFuturesClasses",
           "NullAway:SuppressionNameAliases",
-          "NullAway:WarnOnGenericInferenceFailure");
+          "NullAway:WarnOnGenericInferenceFailure",
+          "NullAway:JarInferEnabled");
 
   ObjectFactory objects;
   ProviderFactory providers;
@@ -72,6 +78,12 @@ public class NullAwayOptionsTest {
     doTestOptions(options -> options.disable());
     doTestOptions(options -> options.warn());
     doTestOptions(options -> options.error());
+    doTestOptions(options -> options.getOnlyNullAway().set(true));
+    doTestOptions(
+        options -> {
+          options.getOnlyNullAway().set(true);
+          options.disable();
+        });
     doTestOptions(options -> options.getOnlyNullMarked().set(true));
     doTestOptions(options -> options.getAnnotatedPackages().add("test"));
     doTestOptions(options -> options.getUnannotatedSubPackages().add("test.dummy"));
@@ -107,10 +119,12 @@ public class NullAwayOptionsTest {
     doTestOptions(options -> options.getExtraFuturesClasses().add("com.example.Future"));
     doTestOptions(options -> options.getSuppressionNameAliases().add("NullIssue"));
     doTestOptions(options -> options.getWarnOnGenericInferenceFailure().set(true));
+    doTestOptions(options -> options.getJarInferEnabled().set(true));
 
     doTestOptions(
         options -> {
           options.enable();
+          options.getOnlyNullAway().set(true);
           options.getAnnotatedPackages().add("test");
           options.getUnannotatedSubPackages().add("test.dummy");
           options.getUnannotatedClasses().add("test.Unannotated");
@@ -140,6 +154,7 @@ public class NullAwayOptionsTest {
           options.getExtraFuturesClasses().add("com.example.Future");
           options.getSuppressionNameAliases().add("NullIssue");
           options.getWarnOnGenericInferenceFailure().set(true);
+          options.getJarInferEnabled().set(true);
         });
   }
 
@@ -180,6 +195,319 @@ public class NullAwayOptionsTest {
     assertOptionsEqual(expectedOptions, parsedOptions);
   }
 
+  @Test
+  void memoizesArgumentsAndRejectsLaterChanges() {
+    var options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    options.getAnnotatedPackages().add("test");
+
+    var arguments = options.asArguments();
+    assertThat(options.asArguments()).isSameInstanceAs(arguments);
+    assertThat(arguments)
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=test")
+        .inOrder();
+
+    assertThrows(IllegalStateException.class, () -> options.getAnnotatedPackages().add("other"));
+    assertThrows(IllegalStateException.class, () -> options.getJspecifyMode().set(true));
+    assertThrows(IllegalStateException.class, options::error);
+    assertThat(options.asArguments()).isSameInstanceAs(arguments);
+  }
+
+  @Test
+  void inheritsProjectOptionsWhenFirstRead() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    var projectOptions = objects.newInstance(NullAwayOptions.class, extension);
+    var options = objects.newInstance(InheritingNullAwayOptions.class, projectOptions);
+    options.getExcludedClasses().add("test.Excluded");
+    extension.getAnnotatedPackages().add("test");
+    extension.getJspecifyMode().set(true);
+
+    var expectedOptions =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    expectedOptions.getAnnotatedPackages().add("test");
+    expectedOptions.getExcludedClasses().add("test.Excluded");
+    expectedOptions.getJspecifyMode().set(true);
+
+    var parsedOptions = parseOptions(options);
+    assertOptionsEqual(expectedOptions, parsedOptions);
+  }
+
+  @Test
+  void taskListOptionsReplaceInheritedOnes() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    extension.getAnnotatedPackages().add("test");
+    var projectOptions = objects.newInstance(NullAwayOptions.class, extension);
+
+    var options = objects.newInstance(NullAwayOptions.class, extension);
+    options.getAnnotatedPackages().add("other");
+    var inheritingOptions = objects.newInstance(InheritingNullAwayOptions.class, projectOptions);
+    inheritingOptions.getAnnotatedPackages().add("other");
+    var appendingOptions = objects.newInstance(InheritingNullAwayOptions.class, projectOptions);
+    appendingOptions.getAnnotatedPackages().addAll(extension.getAnnotatedPackages());
+    appendingOptions.getAnnotatedPackages().add("other");
+
+    assertThat(options.asArguments())
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=other")
+        .inOrder();
+    assertThat(inheritingOptions.asArguments())
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=other")
+        .inOrder();
+    assertThat(appendingOptions.asArguments())
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=test,other")
+        .inOrder();
+  }
+
+  @Test
+  void canonicalizesListOptions() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    extension.getCanonicalizeLists().set(true);
+    extension.getAnnotatedPackages().addAll("test.b", "test.a", "test.b");
+    var options = objects.newInstance(NullAwayOptions.class, extension);
+    options.getExcludedClasses().addAll("test.Z", "test.A", "test.Z");
+
+    assertThat(options.isDisabled()).isFalse();
+    assertThat(options.getAnnotatedPackages().get()).containsExactly("test.a", "test.b").inOrder();
+    assertThat(options.getExcludedClasses().get()).containsExactly("test.A", "test.Z").inOrder();
+    assertThat(options.asArguments())
+        .containsExactly(
+            "-Xep:NullAway",
+            "-XepOpt:NullAway:AnnotatedPackages=test.a,test.b",
+            "-XepOpt:NullAway:ExcludedClasses=test.A,test.Z")
+        .inOrder();
+    assertThrows(IllegalStateException.class, () -> options.getExcludedClasses().add("test.B"));
+  }
+
+  @Test
+  void testConventionsOverrideProjectValues() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    var projectOptions = objects.newInstance(NullAwayOptions.class, extension);
+    var testOptions = objects.newInstance(NullAwaySourceSetOptions.class, "test", extension);
+    testOptions.conventionsFrom(projectOptions);
+    testOptions.testConventions();
+
+    assertThat(testOptions.getJspecifyMode().get()).isFalse();
+    assertThat(testOptions.getHandleTestAssertionLibraries().get()).isTrue();
+
+    extension.getPreset().set(NullAwayPreset.FAST);
+    extension.getJspecifyMode().set(true);
+
+    assertThat(projectOptions.getJspecifyMode().get()).isTrue();
+    assertThat(testOptions.getJspecifyMode().get()).isFalse();
+    assertThat(testOptions.getHandleTestAssertionLibraries().get()).isTrue();
+
+    testOptions.getJspecifyMode().set(true);
+
+    assertThat(testOptions.getJspecifyMode().get()).isTrue();
+  }
+
+  @Test
+  void appliesPresets() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    extension.getJspecifyMode().set(false);
+    var options = objects.newInstance(NullAwayOptions.class, extension);
+    options.getCheckContracts().set(false);
+
+    assertThat(options.getCheckOptionalEmptiness().isPresent()).isFalse();
+
+    options.preset(NullAwayPreset.STRICT);
+
+    assertThat(options.getJspecifyMode().get()).isFalse();
+    assertThat(options.getCheckOptionalEmptiness().get()).isTrue();
+    assertThat(options.getCheckContracts().get()).isFalse();
+    assertThat(options.getHandleTestAssertionLibraries().get()).isTrue();
+    assertThat(options.getExhaustiveOverride().get()).isTrue();
+
+    extension.getPreset().set(NullAwayPreset.BALANCED);
+
+    assertThat(options.getJspecifyMode().get()).isFalse();
+    assertThat(options.getCheckOptionalEmptiness().get()).isFalse();
+    assertThat(options.getCheckContracts().get()).isFalse();
+    assertThat(options.getHandleTestAssertionLibraries().get()).isTrue();
+    assertThat(options.getExhaustiveOverride().get()).isFalse();
+  }
+
+  @Test
+  void tracksEffectivePreset() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    var projectOptions = objects.newInstance(NullAwayOptions.class, extension);
+    var options = objects.newInstance(NullAwayOptions.class, extension);
+    options.conventionsFrom(projectOptions);
+    var inheritingOptions = objects.newInstance(InheritingNullAwayOptions.class, projectOptions);
+
+    assertThat(options.effectivePreset()).isNull();
+    assertThat(inheritingOptions.effectivePreset()).isNull();
+
+    extension.getPreset().set(NullAwayPreset.BALANCED);
+
+    assertThat(options.effectivePreset()).isEqualTo(NullAwayPreset.BALANCED);
+    assertThat(inheritingOptions.effectivePreset()).isEqualTo(NullAwayPreset.BALANCED);
+
+    projectOptions.preset(NullAwayPreset.STRICT);
+    inheritingOptions.preset(NullAwayPreset.FAST);
+
+    assertThat(projectOptions.effectivePreset()).isEqualTo(NullAwayPreset.BALANCED);
+    assertThat(options.effectivePreset()).isEqualTo(NullAwayPreset.BALANCED);
+    assertThat(inheritingOptions.effectivePreset()).isEqualTo(NullAwayPreset.BALANCED);
+
+    extension.getPreset().unset();
+
+    assertThat(projectOptions.effectivePreset()).isEqualTo(NullAwayPreset.STRICT);
+    assertThat(options.effectivePreset()).isEqualTo(NullAwayPreset.STRICT);
+    assertThat(inheritingOptions.effectivePreset()).isEqualTo(NullAwayPreset.STRICT);
+  }
+
+  @Test
+  void taskPresetsDontOverrideInheritedValues() {
+    var extension = objects.newInstance(NullAwayExtension.class);
+    extension.getPreset().set(NullAwayPreset.BALANCED);
+    extension.getJspecifyMode().set(true);
+    var projectOptions = objects.newInstance(NullAwayOptions.class, extension);
+    var options = objects.newInstance(NullAwayOptions.class, extension);
+    options.conventionsFrom(projectOptions);
+    options.preset(NullAwayPreset.FAST);
+    var inheritingOptions = objects.newInstance(InheritingNullAwayOptions.class, projectOptions);
+    inheritingOptions.preset(NullAwayPreset.FAST);
+    inheritingOptions.beforeRead();
+
+    for (var taskOptions : List.of(options, inheritingOptions)) {
+      assertThat(taskOptions.getJspecifyMode().get()).isTrue();
+      assertThat(taskOptions.getCheckContracts().get()).isTrue();
+      assertThat(taskOptions.getHandleTestAssertionLibraries().get()).isTrue();
+    }
+
+    extension.getPreset().unset();
+    projectOptions.getCheckContracts().set(true);
+
+    for (var taskOptions : List.of(options, inheritingOptions)) {
+      assertThat(taskOptions.getJspecifyMode().get()).isTrue();
+      assertThat(taskOptions.getCheckContracts().get()).isTrue();
+      assertThat(taskOptions.getHandleTestAssertionLibraries().get()).isFalse();
+    }
+
+    extension.getJspecifyMode().unset();
+
+    assertThat(options.getJspecifyMode().get()).isFalse();
+    assertThat(inheritingOptions.getJspecifyMode().get()).isFalse();
+  }
+
+  @Test
+  void readsListOptionsFromFiles(@TempDir Path tempDir) throws Exception {
+    var options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    options.getExcludedClasses().add("test.Excluded");
+    options
+        .getExcludedClassesFile()
+        .set(
+            Files.writeString(
+                    tempDir.resolve("excluded.txt"),
+                    "# generated\r\ntest.Generated\r\n\r\n  test.Other  \n")
+                .toFile());
+    options
+        .getUnannotatedClassesFile()
+        .set(Files.writeString(tempDir.resolve("unannotated.txt"), "test.Unannotated\n").toFile());
+    options
+        .getKnownInitializersFile()
+        .set(Files.writeString(tempDir.resolve("initializers.txt"), "").toFile());
+
+    var parsedOptions = parseOptions(options);
+    assertThat(parsedOptions.getFlags().getListOrEmpty("NullAway:ExcludedClasses"))
+        .containsExactly("test.Excluded", "test.Generated", "test.Other")
+        .inOrder();
+    assertThat(parsedOptions.getFlags().getListOrEmpty("NullAway:UnannotatedClasses"))
+        .containsExactly("test.Unannotated");
+    assertThat(parsedOptions.getFlags().get("NullAway:KnownInitializers")).isEmpty();
+  }
+
+  @Test
+  void excludesSourcesOutsideOfChangedPackages(@TempDir Path tempDir) throws Exception {
+    var changedPackages =
+        Files.writeString(
+                tempDir.resolve("changed-packages.txt"),
+                "com.acme.billing\ncom.acme.billing.impl\norg.other\n")
+            .toFile();
+    var options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    options.getAnnotatedPackages().addAll("com.acme", "net.example");
+    options.getChangedPackagesFile().set(changedPackages);
+
+    assertThat(options.asArguments())
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=com.acme,net.example")
+        .inOrder();
+    var excludedPaths = Pattern.compile(requireNonNull(options.excludedPaths(null)));
+    assertThat(excludedPaths.matcher("/p/src/main/java/com/acme/billing/Bill.java").matches())
+        .isFalse();
+    assertThat(excludedPaths.matcher("/p/src/main/java/com/acme/billing/impl/A.java").matches())
+        .isFalse();
+    assertThat(excludedPaths.matcher("/p/src/main/java/com/acme/billing/other/B.java").matches())
+        .isTrue();
+    assertThat(excludedPaths.matcher("/p/src/main/java/com/acme/Main.java").matches()).isTrue();
+    assertThat(excludedPaths.matcher("/p/build/generated/Gen.java").matches()).isTrue();
+
+    var combined = Pattern.compile(requireNonNull(options.excludedPaths(".*/generated/.*")));
+    assertThat(combined.matcher("/p/generated/com/acme/billing/Gen.java").matches()).isTrue();
+    assertThat(combined.matcher("/p/src/main/java/com/acme/billing/Bill.java").matches())
+        .isFalse();
+
+    var unchanged =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    unchanged.getAnnotatedPackages().add("net.example");
+    unchanged.getChangedPackagesFile().set(changedPackages);
+
+    assertThat(unchanged.asArguments()).containsExactly("-Xep:NullAway:OFF");
+    assertThat(unchanged.excludedPaths(".*/generated/.*")).isEqualTo(".*/generated/.*");
+  }
+
+  @Test
+  void mergesLibraryNullMarkedIndexes(@TempDir Path tempDir) throws Exception {
+    var options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    options.getAnnotatedPackages().add("com.app");
+    options
+        .getLibraryNullMarkedIndexFiles()
+        .from(
+            Files.writeString(
+                tempDir.resolve("lib.txt"),
+                "package\tNullMarked\tcom.app.lib\tcom/app/lib/package-info.class\n"
+                    + "package\tNullMarked\tcom.lib\tcom/lib/package-info.class\n"
+                    + "package\tNullUnmarked\tcom.lib.legacy"
+                    + "\tcom/lib/legacy/package-info.class\n"));
+
+    assertThat(options.asArguments())
+        .containsExactly(
+            "-Xep:NullAway",
+            "-XepOpt:NullAway:AnnotatedPackages=com.app,com.lib.[^.]+$",
+            "-XepOpt:NullAway:UnannotatedSubPackages=com.lib.legacy.[^.]+$")
+        .inOrder();
+  }
+
+  @Test
+  void mergesDependencyNullnessSummaries(@TempDir Path tempDir) throws Exception {
+    var options =
+        objects.newInstance(NullAwayOptions.class, objects.newInstance(NullAwayExtension.class));
+    options.getAnnotatedPackages().addAll("com.app", "com.core");
+    options.getKnownInitializers().add("com.app.Main.init");
+    options
+        .getDependencyNullnessSummaryFiles()
+        .from(
+            Files.writeString(
+                tempDir.resolve("core.txt"),
+                "annotatedPackage\tcom.app.core\n"
+                    + "annotatedPackage\tcom.core\n"
+                    + "excludedClass\tcom.core.Generated\n"
+                    + "knownInitializer\tcom.app.Main.init\n"
+                    + "knownInitializer\tcom.core.Base.setUp\n"
+                    + "unannotatedSubPackage\tcom.core.legacy\n"),
+            Files.writeString(tempDir.resolve("util.txt"), "annotatedPackage\tcom.util\n"));
+
+    assertThat(options.asArguments())
+        .containsExactly(
+            "-Xep:NullAway",
+            "-XepOpt:NullAway:AnnotatedPackages=com.app,com.core,com.util.[^.]+$",
+            "-XepOpt:NullAway:UnannotatedSubPackages=com.core.legacy.[^.]+$",
+            "-XepOpt:NullAway:KnownInitializers=com.app.Main.init,com.core.Base.setUp")
+        .inOrder();
+  }
+
   private ErrorProneOptions parseOptions(NullAwayOptions options) {
     return ErrorProneOptions.processArgs(splitArgs(String.join(" ", options.asArguments())));
   }
@@ -190,7 +518,10 @@ public class NullAwayOptionsTest {
   }
 
   private void assertOptionsEqual(NullAwayOptions options, ErrorProneOptions parsedOptions) {
-    assertDefault(parsedOptions, ErrorProneOptions::isDisableAllChecks);
+    assertThat(parsedOptions.isDisableAllChecks())
+        .isEqualTo(
+            options.getOnlyNullAway().getOrElse(false)
+                && options.getSeverity().get() != CheckSeverity.OFF);
     assertDefault(parsedOptions, ErrorProneOptions::isDisableAllWarnings);
     assertDefault(parsedOptions, ErrorProneOptions::isDropErrorsToWarnings);
     assertDefault(parsedOptions, ErrorProneOptions::isEnableAllChecksAsWarnings);
@@ -279,6 +610,8 @@ public class NullAwayOptionsTest {
         parsedOptions,
         "NullAway:WarnOnGenericInferenceFailure",
         options.getWarnOnGenericInferenceFailure());
+    assertBooleanOptionEqual(
+        parsedOptions, "NullAway:JarInferEnabled", options.getJarInferEnabled());
 
     assertThat(
             Sets.difference(
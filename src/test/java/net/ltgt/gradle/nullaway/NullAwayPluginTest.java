@@ -0,0 +1,109 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import net.ltgt.gradle.errorprone.ErrorProneOptions;
+import net.ltgt.gradle.errorprone.ErrorPronePlugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.process.CommandLineArgumentProvider;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullAwayPluginTest {
+  @TempDir File projectDir;
+
+  @Test
+  void defersToCheckTaskInContinuousBuild() {
+    var project = createProject(true);
+
+    var compileTask = project.getTasks().named("compileJava", JavaCompile.class).get();
+    var checkTask = project.getTasks().named("nullawayCheck", NullAwayCheck.class).get();
+
+    assertThat(compileTask.getFinalizedBy().getDependencies(compileTask))
+        .containsExactly(checkTask);
+    assertThat(errorproneArguments(compileTask)).containsExactly("-Xep:NullAway:OFF");
+    assertThat(checkTask.getNullAwayOptions().get().asArguments())
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=test")
+        .inOrder();
+    assertThat(checkTask.getIgnoreFailures().get()).isTrue();
+    assertThat(checkTask.getCacheResults().get()).isTrue();
+  }
+
+  @Test
+  void doesNotDeferOutsideOfContinuousBuild() {
+    var project = createProject(false);
+
+    var compileTask = project.getTasks().named("compileJava", JavaCompile.class).get();
+    var checkTask = project.getTasks().named("nullawayCheck", NullAwayCheck.class).get();
+
+    assertThat(compileTask.getFinalizedBy().getDependencies(compileTask)).isEmpty();
+    assertThat(errorproneArguments(compileTask))
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=test")
+        .inOrder();
+    assertThat(checkTask.getIgnoreFailures().get()).isFalse();
+  }
+
+  @Test
+  void onlyExcludesUnchangedPackagesWhenNullAwayRunsAlone() throws Exception {
+    var project = createProject(false);
+    var changedPackages = new File(projectDir, "changed-packages.txt");
+    Files.writeString(changedPackages.toPath(), "test\n");
+
+    var compileTask = project.getTasks().named("compileJava", JavaCompile.class).get();
+    var nullawayOptions =
+        ((ExtensionAware) errorproneOptions(compileTask))
+            .getExtensions()
+            .getByType(NullAwayOptions.class);
+    nullawayOptions.getChangedPackagesFile().set(changedPackages);
+
+    assertThat(errorproneArguments(compileTask))
+        .containsExactly("-Xep:NullAway", "-XepOpt:NullAway:AnnotatedPackages=test")
+        .inOrder();
+
+    var onlyNullAwayTask = project.getTasks().register("compileOnlyNullAway", JavaCompile.class);
+    var onlyNullAwayOptions =
+        ((ExtensionAware) errorproneOptions(onlyNullAwayTask.get()))
+            .getExtensions()
+            .getByType(NullAwayOptions.class);
+    onlyNullAwayOptions.getChangedPackagesFile().set(changedPackages);
+    onlyNullAwayOptions.getOnlyNullAway().set(true);
+
+    assertThat(errorproneArguments(onlyNullAwayTask.get()))
+        .contains("-XepExcludedPaths:(?!.*/(?:\\Qtest\\E)/[^/]+\\.java$).*");
+  }
+
+  private Project createProject(boolean continuous) {
+    var project = ProjectBuilder.builder().withProjectDir(projectDir).build();
+    project.getGradle().getStartParameter().setContinuous(continuous);
+    project.getPluginManager().apply(JavaPlugin.class);
+    project.getPluginManager().apply(ErrorPronePlugin.class);
+    project.getPluginManager().apply(NullAwayPlugin.class);
+    var extension = project.getExtensions().getByType(NullAwayExtension.class);
+    extension.getAnnotatedPackages().add("test");
+    extension.getDeferInContinuousBuild().set(true);
+    return project;
+  }
+
+  private static ErrorProneOptions errorproneOptions(JavaCompile compileTask) {
+    return ((ExtensionAware) compileTask.getOptions())
+        .getExtensions()
+        .getByType(ErrorProneOptions.class);
+  }
+
+  private static List<String> errorproneArguments(JavaCompile compileTask) {
+    var arguments = new ArrayList<String>();
+    for (CommandLineArgumentProvider provider :
+        errorproneOptions(compileTask).getErrorproneArgumentProviders()) {
+      provider.asArguments().forEach(arguments::add);
+    }
+    return arguments;
+  }
+}
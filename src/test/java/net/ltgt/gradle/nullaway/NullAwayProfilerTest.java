@@ -0,0 +1,99 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullAwayProfilerTest {
+  @TempDir Path tempDir;
+
+  @Test
+  void measuresEachClass() throws Exception {
+    var sources = Files.createDirectories(tempDir.resolve("src/test"));
+    Files.writeString(sources.resolve("A.java"), "package test; class A {} class A2 {}");
+    Files.writeString(sources.resolve("B.java"), "package test; class B {}");
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    var profileFile = tempDir.resolve("profile.txt").toFile();
+    try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+      var task =
+          compiler.getTask(
+              null,
+              fileManager,
+              null,
+              List.of("-d", Files.createDirectories(tempDir.resolve("classes")).toString()),
+              null,
+              fileManager.getJavaFileObjects(
+                  sources.resolve("A.java").toFile(), sources.resolve("B.java").toFile()));
+      var profiler = NullAwayProfiler.attach(task, tempDir);
+      assertThat(task.call()).isTrue();
+      profiler.write(profileFile, 42_000_000);
+    }
+
+    var lines = Files.readAllLines(profileFile.toPath());
+    assertThat(lines).hasSize(4);
+    assertThat(lines.get(0)).startsWith("src/test/A.java\ttest.A\t");
+    assertThat(lines.get(1)).startsWith("src/test/A.java\ttest.A2\t");
+    assertThat(lines.get(2)).startsWith("src/test/B.java\ttest.B\t");
+    assertThat(lines.get(3)).isEqualTo("total\t42000000");
+  }
+
+  @Test
+  void mergesMeasurementsIntoReport() throws Exception {
+    var report = tempDir.resolve("profile.json").toFile();
+    NullAwayProfiler.writeReport(
+        report,
+        List.of(
+            writeProfile(
+                "shard-0.txt",
+                "A.java\ttest.A\t1000000",
+                "A.java\ttest.A2\t3000000",
+                "total\t20000000"),
+            writeProfile(
+                "shard-1.txt",
+                "B.java\ttest.B\t5000000",
+                "\"C\".java\ttest.C\t500000",
+                "total\t30000000")));
+
+    assertThat(Files.readString(report.toPath()))
+        .isEqualTo(
+            """
+            {
+              "totalMillis": 50.000,
+              "nullawayMillis": 9.500,
+              "nullawayShare": 0.1900,
+              "compilationUnits": [
+                {"path": "B.java", "classes": ["test.B"], "nullawayMillis": 5.000},
+                {"path": "A.java", "classes": ["test.A", "test.A2"], "nullawayMillis": 4.000},
+                {"path": "\\"C\\".java", "classes": ["test.C"], "nullawayMillis": 0.500}
+              ]
+            }
+            """);
+  }
+
+  @Test
+  void writesEmptyReport() throws Exception {
+    var report = tempDir.resolve("profile.json").toFile();
+    NullAwayProfiler.writeReport(report, List.of(writeProfile("shard-0.txt", "total\t0")));
+
+    assertThat(Files.readString(report.toPath()))
+        .isEqualTo(
+            """
+            {
+              "totalMillis": 0.000,
+              "nullawayMillis": 0.000,
+              "nullawayShare": 0.0000,
+              "compilationUnits": []
+            }
+            """);
+  }
+
+  private File writeProfile(String name, String... lines) throws Exception {
+    return Files.write(tempDir.resolve(name), List.of(lines)).toFile();
+  }
+}
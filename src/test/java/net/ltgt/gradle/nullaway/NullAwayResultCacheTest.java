@@ -0,0 +1,158 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullAwayResultCacheTest {
+  @TempDir Path projectDir;
+
+  @Test
+  void keysChangeWithDependencies() throws Exception {
+    var sources = new TreeMap<String, File>();
+    writeSource(
+        sources,
+        "A",
+        """
+        package test;
+        class A {
+            Object a() { return new B().foo(); }
+        }
+        """);
+    writeSource(
+        sources,
+        "B",
+        """
+        package test;
+        class B extends C {}
+        """);
+    writeSource(
+        sources,
+        "C",
+        """
+        package test;
+        class C {
+            Object foo() { return this; }
+        }
+        """);
+    writeSource(
+        sources,
+        "D",
+        """
+        package test;
+        class D {
+            Runnable d() { return () -> {}; }
+        }
+        """);
+    var keys = compileAndComputeKeys(sources);
+
+    assertThat(keys.keySet()).containsExactly("A", "B", "C", "D").inOrder();
+    assertThat(compileAndComputeKeys(sources)).isEqualTo(keys);
+
+    // when
+    writeSource(
+        sources,
+        "C",
+        """
+        package test;
+        class C {
+            @Deprecated Object foo() { return this; }
+        }
+        """);
+    var newKeys = compileAndComputeKeys(sources);
+
+    // then
+    assertThat(newKeys.get("A")).isNotEqualTo(keys.get("A"));
+    assertThat(newKeys.get("B")).isNotEqualTo(keys.get("B"));
+    assertThat(newKeys.get("C")).isNotEqualTo(keys.get("C"));
+    assertThat(newKeys.get("D")).isEqualTo(keys.get("D"));
+  }
+
+  @Test
+  void hashesClasspathDirectories() throws Exception {
+    var dir = Files.createDirectories(projectDir.resolve("classes/test"));
+    Files.writeString(dir.resolve("A.class"), "a");
+    Files.writeString(dir.resolve("B.class"), "b");
+    var classesDir = projectDir.resolve("classes").toFile();
+    var hash = NullAwayResultCache.hashClasspathEntry(classesDir);
+
+    assertThat(NullAwayResultCache.hashClasspathEntry(classesDir)).isEqualTo(hash);
+    assertThat(NullAwayResultCache.hashClasspathEntry(projectDir.resolve("missing").toFile()))
+        .isNotEqualTo(hash);
+
+    // when
+    Files.writeString(dir.resolve("B.class"), "bb");
+
+    // then
+    var newHash = NullAwayResultCache.hashClasspathEntry(classesDir);
+    assertThat(newHash).isNotEqualTo(hash);
+
+    // when
+    Files.move(dir.resolve("B.class"), dir.resolve("C.class"));
+
+    // then
+    assertThat(NullAwayResultCache.hashClasspathEntry(classesDir)).isNotEqualTo(newHash);
+  }
+
+  @Test
+  void readsWhatWasWritten() throws Exception {
+    var cacheFile = projectDir.resolve("cache/results.txt").toFile();
+    assertThat(NullAwayResultCache.read(cacheFile)).isEmpty();
+
+    NullAwayResultCache.write(
+        cacheFile,
+        Map.of(
+            "src/main/java/test/A.java",
+            new NullAwayResultCache.Entry(
+                "key1", List.of("src/main/java/test/A.java:1:2: warning: [NullAway] a")),
+            "src/main/java/test/B.java",
+            new NullAwayResultCache.Entry("key2", List.of())));
+    var entries = NullAwayResultCache.read(cacheFile);
+
+    assertThat(entries.keySet())
+        .containsExactly("src/main/java/test/A.java", "src/main/java/test/B.java")
+        .inOrder();
+    assertThat(entries.get("src/main/java/test/A.java").getKey()).isEqualTo("key1");
+    assertThat(entries.get("src/main/java/test/A.java").getFindings())
+        .containsExactly("src/main/java/test/A.java:1:2: warning: [NullAway] a");
+    assertThat(entries.get("src/main/java/test/B.java").getKey()).isEqualTo("key2");
+    assertThat(entries.get("src/main/java/test/B.java").getFindings()).isEmpty();
+  }
+
+  private void writeSource(Map<String, File> sources, String name, String content)
+      throws Exception {
+    var file = projectDir.resolve("src/test/" + name + ".java");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+    sources.put(name, file.toFile());
+  }
+
+  private Map<String, String> compileAndComputeKeys(Map<String, File> sources) throws Exception {
+    var classesDir = projectDir.resolve("classes");
+    Files.createDirectories(classesDir);
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+      assertThat(
+              compiler
+                  .getTask(
+                      null,
+                      fileManager,
+                      null,
+                      List.of("-d", classesDir.toString()),
+                      null,
+                      fileManager.getJavaFileObjectsFromFiles(sources.values()))
+                  .call())
+          .isTrue();
+    }
+    return NullAwayResultCache.computeKeys(
+        "configuration", sources, classesDir.toFile(), List.of(classesDir.toFile()));
+  }
+}
@@ -0,0 +1,102 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullAwaySarifTest {
+  @TempDir Path tempDir;
+
+  @Test
+  void convertsFindingsToResults() {
+    assertThat(
+            NullAwaySarif.result(
+                "src/main/java/test/My Failure.java:8:12: error: [NullAway] dereferenced"
+                    + " expression \"x\" is @Nullable",
+                "lib/"))
+        .isEqualTo(
+            """
+            {"ruleId": "NullAway", "level": "error", \
+            "message": {"text": "[NullAway] dereferenced expression \\"x\\" is @Nullable"}, \
+            "locations": [{"physicalLocation": {"artifactLocation": \
+            {"uri": "lib/src/main/java/test/My%20Failure.java", "uriBaseId": "%SRCROOT%"}, \
+            "region": {"startLine": 8, "startColumn": 12}}}]}""");
+    assertThat(NullAwaySarif.result("warning: [options] bootstrap classpath not set", ""))
+        .isEqualTo(
+            """
+            {"ruleId": "options", "level": "warning", \
+            "message": {"text": "[options] bootstrap classpath not set"}}""");
+    assertThat(NullAwaySarif.result("error: invalid flag: -Xfoo", ""))
+        .isEqualTo(
+            """
+            {"ruleId": "javac", "level": "error", "message": {"text": "invalid flag: -Xfoo"}}""");
+  }
+
+  @Test
+  void mergesRuns() throws Exception {
+    var lib = tempDir.resolve("lib.sarif").toFile();
+    NullAwaySarif.write(
+        lib,
+        ":lib:nullawayCheck",
+        "lib/",
+        List.of("src/main/java/test/A.java:1:2: warning: [NullAway] a"));
+    var app = tempDir.resolve("app.sarif").toFile();
+    NullAwaySarif.write(app, ":app:nullawayCheck", "app/", List.of());
+    var libRuns = tempDir.resolve("lib.json").toFile();
+    var appRuns = tempDir.resolve("app.json").toFile();
+    NullAwaySarif.extractRuns(lib, libRuns);
+    NullAwaySarif.extractRuns(app, appRuns);
+
+    var merged = tempDir.resolve("merged.sarif");
+    NullAwaySarif.merge(merged.toFile(), List.of(libRuns, appRuns));
+
+    assertThat(Files.readString(merged))
+        .isEqualTo(
+            """
+            {
+              "$schema": "https://json.schemastore.org/sarif-2.1.0.json",
+              "version": "2.1.0",
+              "runs": [
+                {
+                  "tool": {"driver": {"name": "NullAway", \
+            "informationUri": "https://github.com/uber/NullAway"}},
+                  "automationDetails": {"id": ":lib:nullawayCheck"},
+                  "results": [
+                    %s
+                  ]
+                },
+                {
+                  "tool": {"driver": {"name": "NullAway", \
+            "informationUri": "https://github.com/uber/NullAway"}},
+                  "automationDetails": {"id": ":app:nullawayCheck"},
+                  "results": []
+                }
+              ]
+            }
+            """
+                .formatted(
+                    NullAwaySarif.result(
+                        "src/main/java/test/A.java:1:2: warning: [NullAway] a", "lib/")));
+  }
+
+  @Test
+  void mergesNoRuns() throws Exception {
+    var merged = tempDir.resolve("merged.sarif");
+    NullAwaySarif.merge(merged.toFile(), List.of());
+
+    assertThat(Files.readString(merged))
+        .isEqualTo(
+            """
+            {
+              "$schema": "https://json.schemastore.org/sarif-2.1.0.json",
+              "version": "2.1.0",
+              "runs": [
+              ]
+            }
+            """);
+  }
+}
@@ -0,0 +1,145 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullMarkedIndexTest {
+  @TempDir Path tempDir;
+
+  @Test
+  void scansPackagesOfJar() throws Exception {
+    writeJSpecifyAnnotations();
+    writeSource("com/lib/marked/package-info.java", "@NullMarked package com.lib.marked;");
+    writeSource(
+        "com/lib/marked/A.java",
+        """
+        package com.lib.marked;
+
+        @org.jspecify.annotations.NullUnmarked
+        public class A {}
+        """);
+    writeSource(
+        "com/lib/unmarked/package-info.java",
+        """
+        @Deprecated
+        @NullUnmarked
+        package com.lib.unmarked;
+
+        import org.jspecify.annotations.NullUnmarked;
+        """);
+    writeSource("com/lib/plain/package-info.java", "@Deprecated package com.lib.plain;");
+    writeSource("com/lib/plain/B.java", "package com.lib.plain; public class B {}");
+
+    var entries = NullMarkedIndex.scanJar(compileToJar());
+
+    assertThat(describe(entries))
+        .containsExactly(
+            "package NullMarked com.lib.marked com/lib/marked/package-info.class",
+            "package NullUnmarked com.lib.unmarked com/lib/unmarked/package-info.class")
+        .inOrder();
+  }
+
+  @Test
+  void expandsNullMarkedModuleToItsPackages() throws Exception {
+    writeJSpecifyAnnotations();
+    writeSource(
+        "module-info.java",
+        """
+        @org.jspecify.annotations.NullMarked
+        module lib {
+            exports com.lib.a;
+            exports com.lib.b;
+        }
+        """);
+    writeSource("com/lib/a/A.java", "package com.lib.a; public class A {}");
+    writeSource("com/lib/a/sub/C.java", "package com.lib.a.sub; public class C {}");
+    writeSource("com/lib/b/package-info.java", "@NullUnmarked package com.lib.b;");
+    writeSource("com/lib/b/B.java", "package com.lib.b; public class B {}");
+
+    var entries = NullMarkedIndex.scanJar(compileToJar());
+
+    assertThat(describe(entries))
+        .containsExactly(
+            "package NullMarked com.lib.a com/lib/a/",
+            "package NullMarked com.lib.a.sub com/lib/a/sub/",
+            "package NullUnmarked com.lib.b com/lib/b/package-info.class")
+        .inOrder();
+  }
+
+  private void writeJSpecifyAnnotations() throws Exception {
+    for (var name : List.of("NullMarked", "NullUnmarked")) {
+      writeSource(
+          "org/jspecify/annotations/" + name + ".java",
+          "package org.jspecify.annotations; public @interface " + name + " {}");
+    }
+  }
+
+  private void writeSource(String path, String content) throws Exception {
+    var file = tempDir.resolve("src").resolve(path);
+    Files.createDirectories(file.getParent());
+    // Let package-info files use the simple names of the annotations
+    if (path.endsWith("package-info.java") && !content.contains("import")) {
+      content = content + "\nimport org.jspecify.annotations.*;";
+    }
+    Files.writeString(file, content);
+  }
+
+  /** Compiles the sources, and packages the classes into a JAR without the JSpecify annotations. */
+  private File compileToJar() throws Exception {
+    var classesDir = Files.createDirectories(tempDir.resolve("classes"));
+    List<File> sources;
+    try (var files = Files.walk(tempDir.resolve("src"))) {
+      sources = files.filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+    }
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+      assertThat(
+              compiler
+                  .getTask(
+                      null,
+                      fileManager,
+                      null,
+                      List.of("-d", classesDir.toString()),
+                      null,
+                      fileManager.getJavaFileObjectsFromFiles(sources))
+                  .call())
+          .isTrue();
+    }
+    var jar = tempDir.resolve("lib.jar");
+    List<Path> classes;
+    try (var files = Files.walk(classesDir)) {
+      classes = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (var classFile : classes) {
+        var name = classesDir.relativize(classFile).toString().replace(File.separatorChar, '/');
+        if (!name.startsWith("org/jspecify/")) {
+          out.putNextEntry(new ZipEntry(name));
+          out.write(Files.readAllBytes(classFile));
+          out.closeEntry();
+        }
+      }
+    }
+    return jar.toFile();
+  }
+
+  private static List<String> describe(Map<String, String[]> entries) {
+    var result = new ArrayList<String>();
+    for (var entry : entries.values()) {
+      result.add(String.join(" ", entry));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,69 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.file.StandardOpenOption.APPEND;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NullnessSummaryTest {
+  @TempDir Path tempDir;
+
+  @Test
+  void keepsAnnotatedPackagesOfProject() {
+    var packages =
+        Set.of("com.acme", "com.acme.api", "com.acme.internal", "com.acme.internal.impl", "org.x");
+
+    assertThat(
+            NullnessSummary.annotatedPackages(
+                packages, List.of("com.acme", "net.example"), List.of("com.acme.internal")))
+        .containsExactly("com.acme", "com.acme.api")
+        .inOrder();
+    assertThat(NullnessSummary.annotatedPackages(packages, List.of("com.acme.api"), List.of()))
+        .containsExactly("com.acme.api");
+    assertThat(NullnessSummary.annotatedPackages(packages, List.of(), List.of())).isEmpty();
+  }
+
+  @Test
+  void keepsUnannotatedSubPackagesOfProject() {
+    var packages =
+        Set.of("com.acme", "com.acme.internal", "com.acme.internal.impl", "com.acme.legacy");
+
+    assertThat(
+            NullnessSummary.unannotatedSubPackages(
+                packages,
+                List.of("com.acme.internal", PackagePrefixTrie.exactEntry("com.acme.legacy"))))
+        .containsExactly("com.acme.internal", "com.acme.internal.impl", "com.acme.legacy")
+        .inOrder();
+    assertThat(NullnessSummary.unannotatedSubPackages(packages, List.of())).isEmpty();
+  }
+
+  @Test
+  void roundTrips() throws Exception {
+    var file = tempDir.resolve("summary.txt").toFile();
+    new NullnessSummary(
+            List.of("com.acme.b", "com.acme.a"),
+            List.of("com.acme.a.legacy"),
+            List.of("com.acme.a.Base.init"))
+        .write(file);
+    Files.writeString(file.toPath(), "excludedClass\tcom.acme.a.Generated\n", APPEND);
+
+    assertThat(Files.readAllLines(file.toPath()))
+        .containsExactly(
+            "annotatedPackage\tcom.acme.a",
+            "annotatedPackage\tcom.acme.b",
+            "knownInitializer\tcom.acme.a.Base.init",
+            "unannotatedSubPackage\tcom.acme.a.legacy",
+            "excludedClass\tcom.acme.a.Generated")
+        .inOrder();
+
+    var summary = NullnessSummary.read(file);
+    assertThat(summary.getAnnotatedPackages()).containsExactly("com.acme.a", "com.acme.b");
+    assertThat(summary.getUnannotatedSubPackages()).containsExactly("com.acme.a.legacy");
+    assertThat(summary.getKnownInitializers()).containsExactly("com.acme.a.Base.init");
+  }
+}
@@ -0,0 +1,135 @@
+package net.ltgt.gradle.nullaway;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class PackagePrefixTrieTest {
+  private static final String[] SEGMENTS = {"com", "acme", "billing", "api", "a", "ab", ""};
+  private static final String[] OPAQUE_ENTRIES = {
+    "com.acme.*", "com.(acme|other)", "com.acme.bill[a-z]+", "com.acme$", "",
+  };
+
+  @Test
+  void removesCoveredEntries() {
+    var removed = new ArrayList<String>();
+
+    var result =
+        PackagePrefixTrie.minimize(
+            List.of(
+                "com.acme.billing.api",
+                "com.acme",
+                "com.acmeother",
+                "com.acme.billing",
+                "org.example",
+                "com.acme",
+                "com.acme.*"),
+            removed::add);
+
+    assertThat(result)
+        .containsExactly("com.acme", "com.acmeother", "org.example", "com.acme.*")
+        .inOrder();
+    assertThat(removed)
+        .containsExactly("com.acme.billing.api", "com.acme.billing", "com.acme")
+        .inOrder();
+  }
+
+  @Test
+  void removesCoveredExactEntries() {
+    var removed = new ArrayList<String>();
+
+    var result =
+        PackagePrefixTrie.minimize(
+            List.of(
+                "com.acme.billing",
+                PackagePrefixTrie.exactEntry("com.acme.billing.api"),
+                PackagePrefixTrie.exactEntry("com.acme.billing"),
+                PackagePrefixTrie.exactEntry("com.acme"),
+                "com.acme.billing.api"),
+            removed::add);
+
+    assertThat(result)
+        .containsExactly("com.acme.billing", PackagePrefixTrie.exactEntry("com.acme"))
+        .inOrder();
+    assertThat(removed)
+        .containsExactly(
+            PackagePrefixTrie.exactEntry("com.acme.billing.api"),
+            PackagePrefixTrie.exactEntry("com.acme.billing"),
+            "com.acme.billing.api")
+        .inOrder();
+  }
+
+  @Test
+  void exactEntriesDontMatchSubpackages() {
+    var pattern = PackagePrefixTrie.toPattern(List.of(PackagePrefixTrie.exactEntry("com.acme")));
+
+    assertThat(PackagePrefixTrie.matchesClassesOf(pattern, "com.acme")).isTrue();
+    assertThat(PackagePrefixTrie.matchesClassesOf(pattern, "com.acme.billing")).isFalse();
+    assertThat(PackagePrefixTrie.matchesClassesOf(pattern, "com")).isFalse();
+    assertThat(pattern.matcher("com.acme.Bill").matches()).isTrue();
+  }
+
+  @Test
+  void matchesSamePackagesAsOriginalList() {
+    // Fixed seed so failures are reproducible
+    var random = new Random(20260117L);
+    for (int run = 0; run < 1_000; run++) {
+      var packageNames = new ArrayList<String>();
+      for (int i = random.nextInt(12); i > 0; i--) {
+        int kind = random.nextInt(8);
+        packageNames.add(
+            kind == 0
+                ? OPAQUE_ENTRIES[random.nextInt(OPAQUE_ENTRIES.length)]
+                : kind == 1
+                    ? PackagePrefixTrie.exactEntry(randomName(random))
+                    : randomName(random));
+      }
+
+      var removed = new ArrayList<String>();
+      var minimized = PackagePrefixTrie.minimize(packageNames, removed::add);
+
+      assertThat(minimized.size() + removed.size()).isEqualTo(packageNames.size());
+      assertThat(minimized).containsNoDuplicates();
+      var removedAgain = new ArrayList<String>();
+      assertThat(PackagePrefixTrie.minimize(minimized, removedAgain::add)).isEqualTo(minimized);
+      assertThat(removedAgain).isEmpty();
+      if (packageNames.isEmpty()) {
+        continue;
+      }
+      var expected = toPattern(packageNames);
+      var actual = toPattern(minimized);
+      for (int i = 0; i < 100; i++) {
+        var className =
+            (i < packageNames.size() ? packageNames.get(i) : randomName(random))
+                + (i % 2 == 0 ? "" : ".C");
+        assertWithMessage("%s matched by %s vs. %s", className, minimized, packageNames)
+            .that(actual.matcher(className).matches())
+            .isEqualTo(expected.matcher(className).matches());
+      }
+    }
+  }
+
+  private static String randomName(Random random) {
+    var segments = new ArrayList<String>();
+    for (int i = 1 + random.nextInt(5); i > 0; i--) {
+      segments.add(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+    }
+    return String.join(".", segments);
+  }
+
+  /** Mimics how NullAway turns the list into a regex. */
+  private static Pattern toPattern(List<String> packageNames) {
+    return Pattern.compile(
+        "^(?:"
+            + packageNames.stream()
+                .map(p -> p.replaceAll("\\.", "\\\\."))
+                .collect(Collectors.joining("|"))
+            + ")(?:\\..*)?");
+  }
+}